@@ -0,0 +1,100 @@
+package javax0.repl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static javax0.repl.CommandDefinitionBuilder.start;
+
+/**
+ * Finding the command of a line, including the alias lookup and the resolution of the abbreviated keywords, when
+ * there are many commands registered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandIndexBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int commands;
+
+    private Repl repl;
+    private ReplCommandEnvironment env;
+    private String[] fullLines;
+    private String[] abbreviatedLines;
+    private int next;
+
+    @Setup
+    public void setup() {
+        repl = new Repl();
+        final var random = new Random(17);
+        fullLines = new String[commands];
+        abbreviatedLines = new String[commands];
+        for (int i = 0; i < commands; i++) {
+            final var keyword = keyword(random, i);
+            repl.command(start().kw(keyword).noParameters().usage("").help("").executor(env -> {
+            }));
+            fullLines[i] = keyword + " argument";
+            abbreviatedLines[i] = keyword.substring(0, keyword.length() - 1) + " argument";
+        }
+        repl.alias("lst", fullLines[0].substring(0, fullLines[0].indexOf(' ')));
+        env = new ReplCommandEnvironment(repl);
+        env.message = new Message();
+    }
+
+    /**
+     * Create a keyword that ends with a unique number, so it can always be abbreviated by dropping the last character
+     * unless that is what makes it unique.
+     */
+    private static String keyword(Random random, int i) {
+        final var sb = new StringBuilder();
+        final int length = 3 + random.nextInt(6);
+        for (int j = 0; j < length; j++) {
+            sb.append((char) ('a' + random.nextInt(26)));
+        }
+        return sb.append(i).append('x').toString();
+    }
+
+    private int next() {
+        if (++next == commands) {
+            next = 0;
+        }
+        return next;
+    }
+
+    @Benchmark
+    public CommandDefinition full() {
+        return repl.resolve(env, fullLines[next()]);
+    }
+
+    @Benchmark
+    public CommandDefinition abbreviated() {
+        return repl.resolve(env, abbreviatedLines[next()]);
+    }
+
+    @Benchmark
+    public CommandDefinition alias() {
+        return repl.resolve(env, "lst argument");
+    }
+
+    @Benchmark
+    public CommandDefinition undefined() {
+        final var comDef = repl.resolve(env, "zzzzzzzz argument");
+        // every invocation has to report the error into an empty message object
+        env.message.clear();
+        return comDef;
+    }
+}
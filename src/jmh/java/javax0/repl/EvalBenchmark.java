@@ -0,0 +1,66 @@
+package javax0.repl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static javax0.repl.CommandDefinitionBuilder.start;
+
+/**
+ * Executing lines with {@link Repl#eval(String)} from one and from many threads using the same Repl object. The
+ * score is the time of one line including the creation of the result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EvalBenchmark {
+    private Repl repl;
+
+    @Setup
+    public void setup() {
+        repl = new Repl()
+            .command(start().kw("echo").usage("").help("")
+                .executor(env -> env.console().writer().print(env.line() + "\n")))
+            .command(start().kw("set").parameters(ValueSet.of("name", "level")).usage("").help("")
+                .executor(env -> env.message().info("level " + env.parser().getInt("level", 0))))
+            .command(start().kw("abs")
+                .regex("canonical", "(\\d+)\\s*\\+(\\d+)i")
+                .regex("polar", "(\\d+)\\((\\d+\\.?\\d*)\\)")
+                .usage("").help("")
+                .executor(env -> env.console().writer().print(env.matcher().group(1))));
+    }
+
+    @Benchmark
+    public Result echo() {
+        return repl.eval("echo some text to print");
+    }
+
+    @Benchmark
+    public Result parameters() {
+        return repl.eval("set name=value level=13");
+    }
+
+    @Benchmark
+    public Result regex() {
+        return repl.eval("abs 3(1.5)");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Result parametersConcurrent() {
+        return repl.eval("set name=value level=13");
+    }
+}
@@ -0,0 +1,92 @@
+package javax0.repl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static javax0.repl.CommandDefinitionBuilder.start;
+
+/**
+ * Executing a script file end to end: reading the lines, resolving the commands, parsing, matching, executing and
+ * printing the output and the messages to an in-memory console. The score is the time of one line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecFileBenchmark {
+    private static final int LINES = 10_000;
+
+    /**
+     * "interactive" flushes the output after every line, "batch" uses the batch mode
+     */
+    @Param({"interactive", "batch"})
+    public String mode;
+
+    private Path script;
+
+    @Setup
+    public void setup() throws IOException {
+        script = Files.createTempFile("repl-bench", ".repl");
+        final var sb = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            switch (i % 4) {
+                case 0:
+                    sb.append("echo line ").append(i).append('\n');
+                    break;
+                case 1:
+                    sb.append("set name=value").append(i).append(" level=").append(i).append('\n');
+                    break;
+                case 2:
+                    sb.append("abs ").append(i).append(" + 2*i\n");
+                    break;
+                default:
+                    sb.append("ec some more text\n");
+            }
+        }
+        Files.writeString(script, sb);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(script);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void execFile() {
+        final var repl = new Repl()
+            .command(start().kw("echo").usage("").help("")
+                .executor(env -> env.console().writer().print(env.line() + "\n")))
+            .command(start().kw("set").parameters(Set.of("name", "level")).usage("").help("")
+                .executor(env -> env.parser().getInt("level", 0)))
+            .command(start().kw("abs").regex("canonical", "(\\d+)\\s*\\+\\s*(\\d+)\\*i").usage("").help("")
+                .executor(env -> env.matcher().group(1)))
+            .console(new StreamConsole(new ByteArrayInputStream(new byte[0]), OutputStream.nullOutputStream()))
+            .args(new String[]{script.toString()});
+        if (mode.equals("batch")) {
+            repl.batch(0);
+        }
+        repl.run();
+    }
+}
@@ -0,0 +1,63 @@
+package javax0.repl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searching the history for a text that is in a few lines only and for a text that is in many lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class HistoryStoreBenchmark {
+    private static final String[] COMMANDS = {"load", "save", "select", "update", "delete", "show", "connect"};
+
+    @Param({"10000", "1000000"})
+    public int lines;
+
+    private HistoryStore history;
+
+    @Setup
+    public void setup() throws IOException {
+        history = new HistoryStore(lines);
+        final var random = new Random(17);
+        for (int i = 0; i < lines; i++) {
+            history.add(COMMANDS[random.nextInt(COMMANDS.length)] + " file=data" + i + ".csv limit=" +
+                random.nextInt(1000));
+        }
+        // builds the index
+        history.search("data", 1);
+    }
+
+    @Benchmark
+    public List<String> rare() {
+        return history.search("data4711.csv", 20);
+    }
+
+    @Benchmark
+    public List<String> frequent() {
+        return history.search("select", 20);
+    }
+
+    @Benchmark
+    public List<String> missing() {
+        return history.search("drop table", 20);
+    }
+}
@@ -0,0 +1,83 @@
+package javax0.repl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collecting and formatting the messages, which happens after every executed line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBenchmark {
+    private final PrintWriter writer = new PrintWriter(Writer.nullWriter());
+
+    /**
+     * Formatting the messages into a string with {@link Message#message()}.
+     */
+    @Benchmark
+    public String empty() {
+        return new Message().message();
+    }
+
+    @Benchmark
+    public String single() {
+        final var message = new Message();
+        message.info("file was loaded");
+        return message.message();
+    }
+
+    @Benchmark
+    public String mixed() {
+        return fill(new Message()).message();
+    }
+
+    /**
+     * The Repl reuses the message object and writes the messages directly to the output.
+     */
+    @Benchmark
+    public void mixedWriteTo(MessageState state) {
+        fill(state.message).writeTo(writer);
+    }
+
+    /**
+     * A command that issues the same warning many times and warnings that are not stored because the object is full.
+     */
+    @Benchmark
+    public void floodWriteTo(MessageState state) {
+        final var message = state.message;
+        for (int i = 0; i < 10_000; i++) {
+            message.warning("the value is out of range");
+            final int line = i;
+            message.warning(() -> "line " + line + " was skipped");
+        }
+        message.writeTo(writer);
+    }
+
+    @State(Scope.Thread)
+    public static class MessageState {
+        final Message message = new Message();
+    }
+
+    private static Message fill(Message message) {
+        message.info("file was loaded");
+        message.error("parameter 'level' is out of range");
+        message.info("using the default value");
+        message.error("output directory does not exist");
+        return message;
+    }
+}
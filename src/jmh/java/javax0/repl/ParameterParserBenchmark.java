@@ -0,0 +1,68 @@
+package javax0.repl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the command lines and fetching the parameters the way a command executor does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParameterParserBenchmark {
+    private static final String SHORT = "file.txt";
+    private static final String LONG = "in=src/main/java out=target/classes enc=UTF-8 v=yes level=3 \"some file.txt\" second";
+    private static final String QUOTED = "message=\"hello, world\" note='it is \\\"quoted\\\"' count=12";
+
+    private Set<String> parameters;
+    private Map<String, ValueSet> values;
+
+    @Setup
+    public void setup() {
+        parameters = ValueSet.of("input", "output", "encoding", "verbose", "level", "message", "note", "count");
+        values = Map.of("verbose", ValueSet.of("yes", "no"));
+    }
+
+    @Benchmark
+    public ParameterParser parseShort() {
+        return ParameterParser.parse(SHORT, parameters, values);
+    }
+
+    @Benchmark
+    public ParameterParser parseLong() {
+        return ParameterParser.parse(LONG, parameters, values);
+    }
+
+    @Benchmark
+    public ParameterParser parseQuoted() {
+        return ParameterParser.parse(QUOTED, parameters, values);
+    }
+
+    @Benchmark
+    public void parseAndGet(Blackhole bh) {
+        final var parser = ParameterParser.parse(LONG, parameters, values);
+        bh.consume(parser.get("input"));
+        bh.consume(parser.get("output"));
+        bh.consume(parser.getOrDefault("encoding", "ASCII"));
+        bh.consume(parser.getBoolean("verbose", false));
+        bh.consume(parser.getInt("level", 0));
+        bh.consume(parser.get(0));
+        bh.consume(parser.get(1));
+    }
+}
@@ -0,0 +1,65 @@
+package javax0.repl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching the lines against the regular expressions of a command that has several syntax variations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyntaxMatcherBenchmark {
+    private SyntaxMatcher matcher;
+    private ReplCommandEnvironment env;
+
+    @Setup
+    public void setup() {
+        final var regexes = new LinkedHashMap<String, String>();
+        regexes.put("canonical", "(\\d+\\.?\\d*)\\s*\\+\\s*(\\d+\\.?\\d*)\\s*\\*?\\s*i");
+        regexes.put("polar", "r\\s*=\\s*(\\d+\\.?\\d*)\\s+phi\\s*=\\s*(\\d+\\.?\\d*)");
+        regexes.put("degree", "deg\\s+(\\d+\\.?\\d*)\\s*;\\s*(\\d+\\.?\\d*)");
+        regexes.put("named", "\\w+\\s*:\\s*(\\d+)");
+        matcher = SyntaxMatcher.of(regexes);
+        env = new ReplCommandEnvironment(new Repl());
+    }
+
+    private boolean match(String line) {
+        env.line = line;
+        return matcher.match(env);
+    }
+
+    @Benchmark
+    public boolean first() {
+        return match("3.14 + 2.71*i");
+    }
+
+    @Benchmark
+    public boolean second() {
+        return match("r = 1.0 phi = 0.5");
+    }
+
+    @Benchmark
+    public boolean last() {
+        return match("angle : 90");
+    }
+
+    @Benchmark
+    public boolean none() {
+        return match("this line does not match any of the syntax");
+    }
+}
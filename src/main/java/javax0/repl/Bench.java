@@ -0,0 +1,134 @@
+package javax0.repl;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * The measurement of the {@code bench} built-in command.
+ * <p>
+ * The line to measure is resolved, parsed and matched once, then the executor of the command is called repeatedly
+ * with the same environment. The first calls are the warmup calls, they are not measured. The output of the command
+ * goes to a writer that drops it and the messages are dropped after every call, thus the measurement includes the
+ * command itself only and not the Repl or the console. The command cannot read the console.
+ * <p>
+ * The bytes allocated by the calls are measured using the {@code com.sun.management.ThreadMXBean} when the JVM
+ * supports it. The executor is called on the thread of the {@code bench} command, so the allocations of the threads
+ * the command may start are not counted.
+ */
+class Bench {
+    private static final PrintWriter DISCARD = new PrintWriter(Writer.nullWriter());
+
+    private final CommandEnvironment env;
+    private final ReplCommandEnvironment target;
+    private final CommandDefinition comDef;
+
+    /**
+     * @param env    the environment of the {@code bench} command, the results are printed to its console and it is
+     *               checked if the benchmark was cancelled
+     * @param target the environment of the measured command with the parsed line
+     * @param comDef the measured command
+     */
+    Bench(CommandEnvironment env, ReplCommandEnvironment target, CommandDefinition comDef) {
+        this.env = env;
+        this.target = target;
+        this.comDef = comDef;
+        target.console = new Jobs.JobConsole(DISCARD);
+    }
+
+    /**
+     * Call the command and print the results.
+     *
+     * @param calls  the number of the measured calls
+     * @param warmup the number of the calls before the measurement
+     */
+    void run(int calls, int warmup) {
+        for (int i = 0; i < warmup; i++) {
+            if (!call()) {
+                return;
+            }
+        }
+        final var times = new long[calls];
+        final long allocatedBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        int n = 0;
+        while (n < calls) {
+            final long t = System.nanoTime();
+            if (!call()) {
+                return;
+            }
+            times[n++] = System.nanoTime() - t;
+        }
+        final long elapsed = Math.max(System.nanoTime() - start, 1);
+        final long allocatedAfter = allocatedBytes();
+        print(Arrays.copyOf(times, n), elapsed, allocatedBefore < 0 ? -1 : (allocatedAfter - allocatedBefore) / n);
+    }
+
+    /**
+     * Call the command once.
+     *
+     * @return {@code false} if the benchmark has to stop because the command reported an error, threw an exception
+     * or the benchmark was cancelled
+     */
+    private boolean call() {
+        if (env.cancelled() || Thread.currentThread().isInterrupted()) {
+            env.message().warning("The benchmark was cancelled");
+            return false;
+        }
+        try {
+            comDef.executor.accept(target);
+        } catch (RuntimeException e) {
+            env.message().error("The command threw " + e);
+            return false;
+        }
+        if (target.message.errorCount() > 0) {
+            env.message().error("The command reported an error, the benchmark was stopped:");
+            for (final var entry : target.message.entries()) {
+                if (entry.level() == Message.Level.ERROR) {
+                    env.message().error(entry.text());
+                }
+            }
+            return false;
+        }
+        target.message.writeTo(DISCARD);
+        return true;
+    }
+
+    private void print(long[] times, long elapsed, long allocatedPerCall) {
+        Arrays.sort(times);
+        long total = 0;
+        for (final var time : times) {
+            total += time;
+        }
+        final var w = env.console().writer();
+        w.print(String.format("%d calls  min %s  mean %s  p50 %s  p99 %s  max %s\n", times.length,
+            CommandStats.format(times[0]), CommandStats.format(total / times.length),
+            CommandStats.format(percentile(times, 0.50)), CommandStats.format(percentile(times, 0.99)),
+            CommandStats.format(times[times.length - 1])));
+        w.print(String.format("%.0f ops/sec", times.length * 1e9 / elapsed));
+        if (allocatedPerCall >= 0) {
+            w.print(String.format("  %d bytes allocated per call", allocatedPerCall));
+        }
+        w.print("\n");
+        w.flush();
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.max((int) Math.ceil(sorted.length * p) - 1, 0)];
+    }
+
+    /**
+     * @return the number of bytes allocated by the current thread so far or -1 if the JVM cannot tell
+     */
+    private static long allocatedBytes() {
+        final var threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            final var sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,34 @@
+package javax0.repl;
+
+import java.io.PrintWriter;
+
+/**
+ * {@link LocalConsole} implementation that reads from another console but writes to a separate, usually buffered
+ * writer. It is used to execute files in batch mode when the output is written to the underlying console only after
+ * many lines were executed, and to redirect the output of a line to a file.
+ */
+class BufferedConsole implements LocalConsole {
+    private final LocalConsole console;
+    private final PrintWriter writer;
+
+    BufferedConsole(LocalConsole console, PrintWriter writer) {
+        this.console = console;
+        this.writer = writer;
+    }
+
+    @Override
+    public String readLine(String msg) {
+        writer.flush();
+        return console.readLine(msg);
+    }
+
+    @Override
+    public PrintWriter writer() {
+        return writer;
+    }
+
+    @Override
+    public void onInterrupt(Runnable action) {
+        console.onInterrupt(action);
+    }
+}
@@ -0,0 +1,146 @@
+package javax0.repl;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The writer of the output of a command redirected to a file with {@code >} or {@code >>}.
+ * <p>
+ * The characters are collected in a small buffer, encoded in UTF-8 and the bytes are collected in a large direct
+ * buffer, which is written to the {@link FileChannel} of the file when it is full. The channel writes the direct
+ * buffer without copying it again and the output is written with a few large system calls, even when the command
+ * prints it in small pieces.
+ */
+class ChannelWriter extends Writer {
+    static final int BUFFER_SIZE = 1 << 20;
+    private static final int CHAR_BUFFER_SIZE = 1 << 13;
+
+    private final FileChannel channel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+    // the encoder is fast only between heap buffers, the encoded bytes are copied to the direct buffer in one step
+    private final ByteBuffer encoded = ByteBuffer.allocate(CHAR_BUFFER_SIZE * 3);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private boolean closed;
+
+    /**
+     * @param file   the file to write
+     * @param append append to the end of the file, otherwise the file is truncated
+     * @throws IOException if the file cannot be opened
+     */
+    ChannelWriter(Path file, boolean append) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        ensureOpen();
+        chars.put((char) c);
+        if (!chars.hasRemaining()) {
+            encode();
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            final int n = Math.min(len, chars.remaining());
+            chars.put(cbuf, off, n);
+            off += n;
+            len -= n;
+            if (!chars.hasRemaining()) {
+                encode();
+            }
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            final int n = Math.min(len, chars.remaining());
+            chars.put(str, off, off + n);
+            off += n;
+            len -= n;
+            if (!chars.hasRemaining()) {
+                encode();
+            }
+        }
+    }
+
+    /**
+     * Write the collected output to the file. The data is passed to the operating system, but it is not forced to the
+     * disk.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        encode();
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (channel) {
+            chars.flip();
+            encoder.encode(chars, encoded, true);
+            encoder.flush(encoded);
+            transfer();
+            drain();
+        }
+    }
+
+    /**
+     * Encode the characters collected so far. A high surrogate at the end, which is the first half of a character,
+     * stays in the character buffer until the second half arrives.
+     */
+    private void encode() throws IOException {
+        chars.flip();
+        encoder.encode(chars, encoded, false);
+        chars.compact();
+        transfer();
+    }
+
+    /**
+     * Copy the encoded bytes to the direct buffer writing the direct buffer to the file first if there is not enough
+     * space in it.
+     */
+    private void transfer() throws IOException {
+        encoded.flip();
+        if (encoded.remaining() > bytes.remaining()) {
+            drain();
+        }
+        bytes.put(encoded);
+        encoded.clear();
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("The file is closed");
+        }
+    }
+}
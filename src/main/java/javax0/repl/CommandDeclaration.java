@@ -0,0 +1,26 @@
+package javax0.repl;
+
+/**
+ * The part of a command definition that is registered eagerly for a command created by a {@link CommandProvider}.
+ */
+public final class CommandDeclaration {
+    final String keyword;
+    final String usage;
+    final String help;
+
+    private CommandDeclaration(String keyword, String usage, String help) {
+        this.keyword = keyword;
+        this.usage = usage;
+        this.help = help;
+    }
+
+    /**
+     * @param keyword the keyword of the command, it may start with {@code *} just like in the command definition
+     * @param usage   the usage of the command printed by the {@code help} command
+     * @param help    the help text of the command printed by the {@code help} command
+     * @return the new declaration
+     */
+    public static CommandDeclaration of(String keyword, String usage, String help) {
+        return new CommandDeclaration(keyword, usage, help);
+    }
+}
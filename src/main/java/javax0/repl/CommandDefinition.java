@@ -1,8 +1,9 @@
 package javax0.repl;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.function.Consumer;
-import java.util.regex.Pattern;
+import java.util.function.Supplier;
 
 /**
  * An object that holds all the information that defines a command.
@@ -10,22 +11,126 @@ import java.util.regex.Pattern;
 class CommandDefinition {
     final String keyword;
     final Set<String> parameters;
-    final Map<String, Pattern> regexes;
+    final Map<String, ValueSet> values;
+    final Map<String, Supplier<Collection<String>>> completions;
+    final SyntaxMatcher regexes;
     final Consumer<CommandEnvironment> executor;
     final String usage;
     final String help;
+    final boolean threadSafe;
+    final Duration timeout;
+    final CommandStats stats = new CommandStats();
+    private final CommandProvider provider;
+    private volatile CommandDefinition definition;
 
     CommandDefinition(String keyword,
                               Set<String> parameters,
                               Consumer<CommandEnvironment> executor,
-                              Map<String, Pattern> regexes,
+                              SyntaxMatcher regexes,
                               String usage,
                               String help) {
+        this(keyword, parameters, Map.of(), Map.of(), executor, regexes, usage, help, false, null);
+    }
+
+    CommandDefinition(String keyword,
+                      Set<String> parameters,
+                      Map<String, ValueSet> values,
+                      Map<String, Supplier<Collection<String>>> completions,
+                      Consumer<CommandEnvironment> executor,
+                      SyntaxMatcher regexes,
+                      String usage,
+                      String help,
+                      boolean threadSafe,
+                      Duration timeout) {
         this.keyword = keyword;
         this.parameters = parameters;
+        this.values = values;
+        this.completions = completions;
         this.executor = executor;
         this.regexes = regexes;
         this.usage = usage;
         this.help = help;
+        this.threadSafe = threadSafe;
+        this.timeout = timeout;
+        this.provider = null;
+        this.definition = this;
+    }
+
+    /**
+     * Create a command that is defined by the provider when it is first executed.
+     *
+     * @param declaration the keyword, usage and help of the command
+     * @param provider    the provider that defines the command
+     */
+    CommandDefinition(CommandDeclaration declaration, CommandProvider provider) {
+        this.keyword = declaration.keyword;
+        this.parameters = null;
+        this.values = Map.of();
+        this.completions = Map.of();
+        this.executor = null;
+        this.regexes = null;
+        this.usage = declaration.usage;
+        this.help = declaration.help;
+        this.threadSafe = false;
+        this.timeout = null;
+        this.provider = provider;
+    }
+
+    /**
+     * @return the command ready to be executed. For a command of a {@link CommandProvider} it is the definition
+     * created by the provider, which is asked at most once.
+     * @throws IllegalArgumentException if the provider defines a command with a different keyword
+     */
+    CommandDefinition definition() {
+        var d = definition;
+        if (d == null) {
+            synchronized (this) {
+                d = definition;
+                if (d == null) {
+                    d = provider.definition(keyword).build();
+                    if (!keyword.equals(d.keyword)) {
+                        throw new IllegalArgumentException("The provider " + provider.getClass().getName() +
+                            " defined the command '" + d.keyword + "' instead of '" + keyword + "'");
+                    }
+                    definition = d;
+                }
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Append everything to the string builder that the resolution and the parsing of a line invoking this command
+     * depends on: the keyword, the parameters, their values and the regular expressions. A command of a
+     * {@link CommandProvider} is represented by its keyword, the class and the version of the provider, thus it is
+     * not defined by calling this method, and the fingerprint does not change when it gets defined.
+     *
+     * @param sb the builder to append to
+     */
+    void fingerprint(StringBuilder sb) {
+        if (provider != null) {
+            sb.append(keyword).append(' ').append(provider.getClass().getName()).append(' ')
+                .append(provider.version()).append('\n');
+            return;
+        }
+        sb.append(keyword).append('\n');
+        if (parameters != null) {
+            sb.append(new TreeSet<>(parameters)).append('\n');
+        }
+        for (final var entry : new TreeMap<>(values).entrySet()) {
+            sb.append(entry.getKey()).append(new TreeSet<>(entry.getValue())).append('\n');
+        }
+        if (regexes != null) {
+            regexes.fingerprint(sb);
+        }
+    }
+
+    /**
+     * @return the statistics of the command. The statistics of a command that was not defined yet by its provider
+     * are always empty.
+     */
+    CommandStats stats() {
+        final var d = definition;
+        return d == null ? stats : d.stats;
     }
 }
@@ -2,12 +2,14 @@ package javax0.repl;
 
 import javax0.geci.annotations.Geci;
 
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
-import java.util.regex.Pattern;
+import java.util.function.Supplier;
 
 /**
  * A command definition builder that can be used to create a command definition. This is  the builder to be used to
@@ -17,23 +19,57 @@ import java.util.regex.Pattern;
 public class CommandDefinitionBuilder {
     private String keyword;
     private Set<String> parameters;
+    private Map<String, ValueSet> values;
+    private Map<String, Supplier<Collection<String>>> completions;
     private Consumer<CommandEnvironment> executor;
-    private Map<String, Pattern> regexes;
+    private Map<String, String> regexes;
     private String usage;
     private String help;
+    private boolean threadSafe;
+    private Duration timeout;
 
     private void kw(String keyword) {
         this.keyword = keyword;
     }
 
     private CommandDefinition build() {
-        return new CommandDefinition(keyword, parameters, executor, regexes, usage, help);
+        if (values != null && parameters != null) {
+            for (final var parameter : values.keySet()) {
+                if (!parameters.contains(parameter)) {
+                    throw new IllegalArgumentException(
+                        "Values are defined for the parameter '" + parameter + "' of the command '" + keyword +
+                            "' but there is no such parameter");
+                }
+            }
+        }
+        if (completions != null && parameters != null) {
+            for (final var parameter : completions.keySet()) {
+                if (!parameter.startsWith("#") && !parameters.contains(parameter)) {
+                    throw new IllegalArgumentException(
+                        "Completion is defined for the parameter '" + parameter + "' of the command '" + keyword +
+                            "' but there is no such parameter");
+                }
+            }
+        }
+        return new CommandDefinition(keyword,
+            parameters == null ? null : ValueSet.of(parameters),
+            values == null ? Map.of() : Map.copyOf(values),
+            completions == null ? Map.of() : Map.copyOf(completions),
+            executor, SyntaxMatcher.of(regexes), usage, help, threadSafe, timeout);
     }
 
     private void executor(Consumer<CommandEnvironment> executor) {
         this.executor = executor;
     }
 
+    private void threadSafe() {
+        this.threadSafe = true;
+    }
+
+    private void timeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
     private void usage(String usage) {
         this.usage = usage;
     }
@@ -67,41 +103,58 @@ public class CommandDefinitionBuilder {
         }
     }
 
+    private void values(String parameter, Set<String> values) {
+        if (this.values == null) {
+            this.values = new LinkedHashMap<>();
+        }
+        this.values.put(parameter, ValueSet.of(values));
+    }
+
+    /**
+     * Define where the values offered by the Tab completion for the parameter come from. The supplier is called on a
+     * background thread and its result is cached for a while, so it can be slow, like querying a database.
+     *
+     * @param parameter the name of the parameter or {@code #0}, {@code #1} and so on for the positional arguments
+     * @param values    the supplier of the possible values
+     */
+    private void completion(String parameter, Supplier<Collection<String>> values) {
+        if (completions == null) {
+            completions = new LinkedHashMap<>();
+        }
+        completions.put(parameter, values);
+    }
+
     private void regex(String name, String regex) {
         if (regexes == null) {
-            this.regexes = new HashMap<>();
+            this.regexes = new LinkedHashMap<>();
         }
-        regexes.put(name, Pattern.compile(regex));
+        regexes.put(name, regex);
     }
 
     //<editor-fold id="fluent" desc="fluent API interfaces and classes">
-    public static Ofob start(){
+    public static Oded start(){
         return new Wrapper();
     }
-    public static class Wrapper implements Abok,Efeh,Edak,CommandDefinitionBuilderReady,Acuh,Aduf,Ohug,Ofob,Ukeg,Ujaj,Ogoj,Uhab{
+    public static class Wrapper implements Ecac,Abok,Efeh,Uguc,Edak,CommandDefinitionBuilderReady,Acuh,Aduf,Ohug,Ofob,Ukeg,Oded,Ujaj,Ogoj,Akec,Uhab{
         private final javax0.repl.CommandDefinitionBuilder that;
         public Wrapper(){
             this.that = new javax0.repl.CommandDefinitionBuilder();
         }
-        public Wrapper usage(String arg1){
-            that.usage(arg1);
+        public Wrapper completion(String arg1, java.util.function.Supplier<java.util.Collection<String>> arg2){
+            that.completion(arg1,arg2);
             return this;
         }
         public Wrapper help(String arg1){
             that.help(arg1);
             return this;
         }
-        public Wrapper noParameters(){
-            that.noParameters();
+        public Wrapper timeout(java.time.Duration arg1){
+            that.timeout(arg1);
             return this;
         }
         public javax0.repl.CommandDefinition build(){
             return that.build();
         }
-        public Wrapper kw(String arg1){
-            that.kw(arg1);
-            return this;
-        }
         public Wrapper executor(java.util.function.Consumer<javax0.repl.CommandEnvironment> arg1){
             that.executor(arg1);
             return this;
@@ -114,6 +167,26 @@ public class CommandDefinitionBuilder {
             that.parameters(arg1);
             return this;
         }
+        public Wrapper values(String arg1, java.util.Set<String> arg2){
+            that.values(arg1,arg2);
+            return this;
+        }
+        public Wrapper usage(String arg1){
+            that.usage(arg1);
+            return this;
+        }
+        public Wrapper noParameters(){
+            that.noParameters();
+            return this;
+        }
+        public Wrapper kw(String arg1){
+            that.kw(arg1);
+            return this;
+        }
+        public Wrapper threadSafe(){
+            that.threadSafe();
+            return this;
+        }
         public Wrapper parameter(String arg1){
             that.parameter(arg1);
             return this;
@@ -132,25 +205,37 @@ public class CommandDefinitionBuilder {
         Ukeg usage(String arg1);
     }
     public interface Efeh extends Ohug {
-        Efeh regex(String arg1, String arg2);
+        Ohug timeout(java.time.Duration arg1);
     }
-    public interface Ujaj {
-        Efeh noParameters();
+    public interface Acuh extends Efeh {
+        Efeh threadSafe();
     }
-    public interface Ogoj {
-        Efeh parameters(java.util.Set<String> arg1);
+    public interface Ujaj extends Acuh {
+        Ujaj regex(String arg1, String arg2);
     }
-    public interface Edak extends Efeh {
-        Edak parameter(String arg1);
+    public interface Ogoj extends Ujaj {
+        Ogoj completion(String arg1, java.util.function.Supplier<java.util.Collection<String>> arg2);
     }
-    public interface Abok {
-        Edak parameter(String arg1);
+    public interface Edak extends Ogoj {
+        Edak values(String arg1, java.util.Set<String> arg2);
     }
-    public interface Uhab extends Abok,Ujaj,Ogoj{
+    public interface Uhab {
+        Edak noParameters();
     }
-    public interface Acuh extends Efeh,Uhab {}
     public interface Ofob {
-        Acuh kw(String arg1);
+        Edak parameters(java.util.Set<String> arg1);
+    }
+    public interface Ecac extends Edak {
+        Ecac parameter(String arg1);
+    }
+    public interface Akec {
+        Ecac parameter(String arg1);
+    }
+    public interface Uguc extends Akec,Uhab,Ofob{
+    }
+    public interface Abok extends Uguc,Edak {}
+    public interface Oded {
+        Abok kw(String arg1);
     }
 
     //</editor-fold>
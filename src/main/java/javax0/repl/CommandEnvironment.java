@@ -1,5 +1,7 @@
 package javax0.repl;
 
+import java.io.BufferedReader;
+import java.io.Reader;
 import java.util.regex.Matcher;
 
 public interface CommandEnvironment {
@@ -37,12 +39,34 @@ public interface CommandEnvironment {
      */
     LocalConsole console();
 
+    /**
+     * @return the output of the previous command when the command is not the first one in a pipeline, like
+     * {@code export | filter}. The reader returns end of file when the previous command has finished and the command
+     * has read all its output. The command that is not in a pipeline gets a reader that returns end of file
+     * immediately. The command does not need to read the input to the end, the previous command is cancelled and
+     * its further output is dropped when the command finishes.
+     */
+    default BufferedReader input() {
+        return new BufferedReader(Reader.nullReader());
+    }
+
     /**
      * @return the message object that can be used to collect info, warning and error messagaes. These messages are
      * displayed to the user when the command has finished.
      */
     Message message();
 
+    /**
+     * Long running commands should call this method regularly and stop when it returns {@code true}. The command is
+     * cancelled when the user presses Ctrl-C, when the timeout of the command is over or when the command runs in the
+     * background and it is killed. In these cases the thread executing the command is also interrupted.
+     *
+     * @return {@code true} if the command was cancelled
+     */
+    default boolean cancelled() {
+        return false;
+    }
+
     /**
      * @return the Repl object that the command is running in. It is not likely that there are many Repl objects in a
      * single JVM? but still this is the preferred way to access the Repl object in case a command needs it. As an example
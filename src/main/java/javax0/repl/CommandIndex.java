@@ -0,0 +1,176 @@
+package javax0.repl;
+
+import java.util.Arrays;
+
+/**
+ * An immutable prefix tree (trie) that resolves the keyword the user typed to the command definition.
+ * <p>
+ * Every node stores the number of abbreviable command keywords that are in the subtree of the node and the only
+ * definition in case this number is one. That way the resolution of a keyword only walks down the characters of the
+ * keyword and the time does not depend on the number of the commands registered.
+ * <p>
+ * The keywords starting with {@code *} cannot be abbreviated. They are stored at the node where the keyword ends and
+ * they match only when the typed keyword reaches that node exactly.
+ * <p>
+ * Adding a new definition creates a new index sharing all the nodes with the old index that are not on the path of
+ * the new keyword. The old index remains intact.
+ */
+class CommandIndex {
+    /**
+     * Returned by {@link #find(String)} when there are more than one command matching the keyword.
+     */
+    static final CommandDefinition AMBIGUOUS = new CommandDefinition(null, null, null, null, null, null);
+
+    static final CommandIndex EMPTY = new CommandIndex(new Node());
+
+    private final Node root;
+
+    private CommandIndex(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Find the command that matches the keyword.
+     *
+     * @param keyword the keyword as the user typed it, possibly abbreviated and in any character case
+     * @return the matching command definition, {@link #AMBIGUOUS} if there are more than one matching commands or
+     * {@code null} if there is no matching command
+     */
+    CommandDefinition find(String keyword) {
+        final var node = walk(keyword);
+        if (node == null) {
+            return null;
+        }
+        final int count = node.count + (node.exact == null ? 0 : 1);
+        if (count == 0) {
+            return null;
+        }
+        if (count > 1) {
+            return AMBIGUOUS;
+        }
+        return node.exact == null ? node.unique : node.exact;
+    }
+
+    /**
+     * Find the command that has exactly the given keyword ignoring the character case. This is used to find the
+     * command a new definition replaces.
+     *
+     * @param keyword the keyword as it is defined in the command definition, including the leading {@code *} if any
+     * @return the command definition or {@code null} if there is no command defined with the keyword
+     */
+    CommandDefinition get(String keyword) {
+        final var star = keyword.startsWith("*");
+        final var node = walk(star ? keyword.substring(1) : keyword);
+        if (node == null) {
+            return null;
+        }
+        return star ? node.exact : node.terminal;
+    }
+
+    /**
+     * Create a new index that contains all the definitions of this index and the new definition. If there is a
+     * definition in this index with the same keyword (ignoring case and the leading {@code *}) then the new definition
+     * replaces the old one.
+     *
+     * @param definition the new command definition
+     * @return the new index
+     */
+    CommandIndex with(CommandDefinition definition) {
+        final var star = definition.keyword.startsWith("*");
+        final var keyword = star ? definition.keyword.substring(1) : definition.keyword;
+        return new CommandIndex(insert(root, keyword, 0, definition, star));
+    }
+
+    private Node walk(String keyword) {
+        var node = root;
+        for (int i = 0; i < keyword.length() && node != null; i++) {
+            node = node.child(Character.toLowerCase(keyword.charAt(i)));
+        }
+        return node;
+    }
+
+    private static Node insert(Node node, String keyword, int i, CommandDefinition definition, boolean star) {
+        final var copy = node.copy();
+        if (i == keyword.length()) {
+            if (star) {
+                if (copy.terminal != null) {
+                    copy.terminal = null;
+                    copy.count--;
+                }
+                copy.exact = definition;
+            } else {
+                if (copy.terminal == null) {
+                    copy.count++;
+                }
+                copy.terminal = definition;
+                copy.exact = null;
+            }
+        } else {
+            final char c = Character.toLowerCase(keyword.charAt(i));
+            final var child = node.child(c);
+            final var newChild = insert(child == null ? new Node() : child, keyword, i + 1, definition, star);
+            copy.count += newChild.count - (child == null ? 0 : child.count);
+            copy.setChild(c, newChild);
+        }
+        copy.unique = copy.count == 1 ? uniqueOf(copy) : null;
+        return copy;
+    }
+
+    private static CommandDefinition uniqueOf(Node node) {
+        if (node.terminal != null) {
+            return node.terminal;
+        }
+        for (final var child : node.children) {
+            if (child.count == 1) {
+                return child.unique;
+            }
+        }
+        return null;
+    }
+
+    private static class Node {
+        private static final char[] NO_CHARS = new char[0];
+        private static final Node[] NO_NODES = new Node[0];
+        private char[] chars = NO_CHARS;
+        private Node[] children = NO_NODES;
+        private CommandDefinition terminal;
+        private CommandDefinition exact;
+        private CommandDefinition unique;
+        private int count;
+
+        private Node child(char c) {
+            final int i = Arrays.binarySearch(chars, c);
+            return i < 0 ? null : children[i];
+        }
+
+        private void setChild(char c, Node child) {
+            final int i = Arrays.binarySearch(chars, c);
+            if (i >= 0) {
+                children[i] = child;
+                return;
+            }
+            final int at = -i - 1;
+            final var newChars = new char[chars.length + 1];
+            final var newChildren = new Node[children.length + 1];
+            System.arraycopy(chars, 0, newChars, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newChars[at] = c;
+            newChildren[at] = child;
+            System.arraycopy(chars, at, newChars, at + 1, chars.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            chars = newChars;
+            children = newChildren;
+        }
+
+        private Node copy() {
+            final var copy = new Node();
+            copy.chars = chars;
+            copy.children = children.clone();
+            copy.terminal = terminal;
+            copy.exact = exact;
+            copy.unique = unique;
+            copy.count = count;
+            return copy;
+        }
+    }
+}
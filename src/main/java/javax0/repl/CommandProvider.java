@@ -0,0 +1,48 @@
+package javax0.repl;
+
+import javax0.repl.CommandDefinitionBuilder.CommandDefinitionBuilderReady;
+
+import java.util.Collection;
+
+/**
+ * A provider of commands that are defined only when they are first used.
+ * <p>
+ * When the provider is registered calling {@link Repl#provider(CommandProvider)} or it is found by
+ * {@link Repl#providers()} via the {@link java.util.ServiceLoader} only the keywords, usage and help texts of the
+ * commands are registered. The command itself is defined calling {@link #definition(String)} when the user first
+ * executes it. Applications with thousands of commands can start fast this way, because the parameter sets and the
+ * regular expressions of the commands that are not used are never compiled.
+ * <p>
+ * Implementations found by the {@link java.util.ServiceLoader} have to be listed in the file
+ * {@code META-INF/services/javax0.repl.CommandProvider} and they have to have a public no-argument constructor. The
+ * constructor and the method {@link #declarations()} should be cheap.
+ */
+public interface CommandProvider {
+    /**
+     * @return the keywords, usage and help texts of the commands the provider can define
+     */
+    Collection<CommandDeclaration> declarations();
+
+    /**
+     * Define a command. This method is called at most once for every declared keyword. In case the application runs
+     * as a server it may be called from any of the session threads.
+     *
+     * @param keyword the keyword of the command as it was declared
+     * @return the builder of the command, the same as the argument to {@link Repl#command(CommandDefinitionBuilderReady)}.
+     * The keyword in the builder has to be the same as the declared one.
+     */
+    CommandDefinitionBuilderReady definition(String keyword);
+
+    /**
+     * The compiled scripts saved by {@link Repl#scriptCache(String)} are not used when the class or the version of
+     * the provider changes. A provider should return a new version when the parameters or the regular expressions of
+     * its commands change. The commands are not defined to check if the compiled scripts are up to date.
+     *
+     * @return the version of the commands of the provider. The default is the implementation version of the package
+     * of the provider class, or an empty string if it is not known.
+     */
+    default String version() {
+        final var version = getClass().getPackage() == null ? null : getClass().getPackage().getImplementationVersion();
+        return version == null ? "" : version;
+    }
+}
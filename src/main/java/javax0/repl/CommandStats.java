@@ -0,0 +1,155 @@
+package javax0.repl;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Invocation statistics of a command. It counts the invocations, the failed invocations and records the latency
+ * of the different phases of the command execution in histograms.
+ * <p>
+ * The histograms have logarithmic buckets: every power of two range is split into {@value #SUB_BUCKETS} equal
+ * parts, thus the percentiles are reported with about 12% precision. The histogram arrays are allocated when the
+ * command is first executed, so commands that are never used do not consume memory. All the methods are thread safe,
+ * the commands may be executed in parallel and in different sessions.
+ */
+class CommandStats {
+    enum Phase {PARSE, MATCH, EXECUTE, REPORT}
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLong invocations = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile Histogram[] histograms;
+
+    private static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong max = new AtomicLong();
+
+        private void record(long nanos) {
+            buckets.incrementAndGet(bucket(Math.max(nanos, 0)));
+            max.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the largest value that belongs to the bucket
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int magnitude = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        final long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (magnitude - SUB_BITS)) - 1;
+    }
+
+    private Histogram[] histograms() {
+        var h = histograms;
+        if (h == null) {
+            synchronized (this) {
+                h = histograms;
+                if (h == null) {
+                    h = new Histogram[Phase.values().length];
+                    for (int i = 0; i < h.length; i++) {
+                        h[i] = new Histogram();
+                    }
+                    histograms = h;
+                }
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Record the time a phase of the execution took.
+     *
+     * @param phase the phase of the execution
+     * @param nanos the time in nanoseconds
+     */
+    void record(Phase phase, long nanos) {
+        histograms()[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * Count an invocation of the command.
+     *
+     * @param success {@code false} if the command failed: it threw an exception, the line did not match the syntax
+     *                or the command reported an error
+     */
+    void invoked(boolean success) {
+        invocations.incrementAndGet();
+        if (!success) {
+            errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Print the statistics and reset them to zero.
+     *
+     * @param keyword the keyword of the command
+     * @param w       the writer to print to
+     * @return {@code true} if anything was printed, {@code false} if the command was not invoked since the last reset
+     */
+    boolean printAndReset(String keyword, PrintWriter w) {
+        final long count = invocations.getAndSet(0);
+        final long errorCount = errors.getAndSet(0);
+        final var h = histograms;
+        if (count == 0 || h == null) {
+            return false;
+        }
+        w.print(keyword + ": " + count + " invocations, " + errorCount + " errors\n");
+        for (final var phase : Phase.values()) {
+            final var histogram = h[phase.ordinal()];
+            final var counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram.buckets.getAndSet(i, 0);
+                total += counts[i];
+            }
+            final long max = histogram.max.getAndSet(0);
+            if (total > 0) {
+                w.print(String.format("  %-8s p50 %9s  p99 %9s  max %9s\n", phase.name().toLowerCase(),
+                    format(Math.min(percentile(counts, total, 0.5), max)),
+                    format(Math.min(percentile(counts, total, 0.99), max)), format(max)));
+            }
+        }
+        return true;
+    }
+
+    private static long percentile(long[] counts, long total, double p) {
+        final long rank = (long) Math.ceil(total * p);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+
+    static String format(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        }
+        if (nanos < 1_000_000) {
+            return String.format("%.1fus", nanos / 1e3);
+        }
+        if (nanos < 1_000_000_000) {
+            return String.format("%.1fms", nanos / 1e6);
+        }
+        return String.format("%.2fs", nanos / 1e9);
+    }
+}
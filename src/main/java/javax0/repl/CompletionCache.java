@@ -0,0 +1,169 @@
+package javax0.repl;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * The cache of the values supplied by the completion suppliers defined calling {@code completion()} in the command
+ * definition.
+ * <p>
+ * The suppliers are called on a background thread. When the user presses Tab the cached values are returned
+ * immediately. If they are older than the time to live then a new call to the supplier is started in the background
+ * and the next Tab will get the new values. The first time the values are needed the caller waits a short time for
+ * the supplier. A supplier that does not return within its time budget is interrupted and the old values are kept.
+ * The cache keeps the values of a limited number of parameters dropping the least recently used ones.
+ */
+class CompletionCache {
+    private static final ExecutorService pool = Executors.newCachedThreadPool(r -> {
+        final var thread = new Thread(r, "repl-completion");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // cancels the suppliers that run longer than their budget
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        final var thread = new Thread(r, "repl-completion-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Duration timeToLive;
+    private final Duration budget;
+    private final Duration firstWait;
+    private final Map<Key, Cached> entries;
+
+    /**
+     * @param capacity   the maximum number of the parameters the values are cached for
+     * @param timeToLive the time after which the values are fetched again
+     * @param budget     the time a supplier may run
+     * @param firstWait  the time to wait for the supplier when there are no values in the cache yet
+     */
+    CompletionCache(int capacity, Duration timeToLive, Duration budget, Duration firstWait) {
+        this.timeToLive = timeToLive;
+        this.budget = budget;
+        this.firstWait = firstWait;
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    private static class Key {
+        final CommandDefinition command;
+        final String parameter;
+
+        Key(CommandDefinition command, String parameter) {
+            this.command = command;
+            this.parameter = parameter;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final var other = (Key) o;
+            return command == other.command && parameter.equals(other.parameter);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(command), parameter);
+        }
+    }
+
+    private static class Cached {
+        volatile Collection<String> values = List.of();
+        volatile long loadedAt;
+        volatile boolean loaded;
+        FutureTask<Collection<String>> loading;
+    }
+
+    /**
+     * Get the values for the parameter of the command.
+     *
+     * @param command   the command
+     * @param parameter the parameter name or {@code #0}, {@code #1}... for the positional arguments
+     * @return the cached values, or the values the supplier returns within a short time when nothing is cached, or
+     * an empty collection. Never {@code null}.
+     */
+    Collection<String> get(CommandDefinition command, String parameter) {
+        final var supplier = command.completions.get(parameter);
+        if (supplier == null) {
+            return List.of();
+        }
+        final Cached entry;
+        final FutureTask<Collection<String>> task;
+        synchronized (this) {
+            entry = entries.computeIfAbsent(new Key(command, parameter), k -> new Cached());
+            if (entry.loaded) {
+                // the cached values are returned even if the refresh started here finishes before we return
+                final var values = entry.values;
+                refresh(entry, supplier);
+                return values;
+            }
+            task = refresh(entry, supplier);
+        }
+        if (task != null) {
+            try {
+                task.get(firstWait.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException | CancellationException ignored) {
+                // the values will be there for the next Tab if the supplier finishes in its budget
+            }
+        }
+        return entry.values;
+    }
+
+    /**
+     * Start loading the values if they are not loaded or they are too old and they are not being loaded.
+     *
+     * @return the task loading the values or {@code null} if the values are fresh
+     */
+    private FutureTask<Collection<String>> refresh(Cached entry, Supplier<Collection<String>> supplier) {
+        if (entry.loading != null) {
+            return entry.loading;
+        }
+        if (entry.loaded && System.nanoTime() - entry.loadedAt < timeToLive.toNanos()) {
+            return null;
+        }
+        final var task = new FutureTask<>(supplier::get) {
+            // called before the waiting threads are released, done() is called after
+            @Override
+            protected void set(Collection<String> values) {
+                if (!isCancelled()) {
+                    entry.values = values == null ? List.of() : List.copyOf(values);
+                }
+                super.set(values);
+            }
+
+            @Override
+            protected void done() {
+                synchronized (CompletionCache.this) {
+                    entry.loadedAt = System.nanoTime();
+                    entry.loaded = true;
+                    entry.loading = null;
+                }
+            }
+        };
+        entry.loading = task;
+        pool.execute(task);
+        timer.schedule(() -> task.cancel(true), budget.toMillis(), TimeUnit.MILLISECONDS);
+        return task;
+    }
+}
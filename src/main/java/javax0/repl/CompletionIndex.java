@@ -0,0 +1,127 @@
+package javax0.repl;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A prefix tree (trie) of the words that can be offered when the user presses Tab at the start of the line: the
+ * keywords of the commands and the aliases.
+ * <p>
+ * The tree is walked ignoring the character case, the words are offered in the case they were added. Collecting the
+ * words for a prefix walks down the characters of the prefix and then visits only the subtree of the matching words,
+ * thus the time does not depend on the number of the words that do not match. The words can be added and removed any
+ * time, the methods are synchronized.
+ */
+class CompletionIndex {
+    private final Node root = new Node();
+
+    /**
+     * Add a word. Adding a word that is already in the index does nothing.
+     *
+     * @param word the word to add
+     */
+    synchronized void add(String word) {
+        var node = root;
+        for (int i = 0; i < word.length(); i++) {
+            node = node.childOrNew(Character.toLowerCase(word.charAt(i)));
+        }
+        node.add(word);
+    }
+
+    /**
+     * Remove a word. Removing a word that is not in the index does nothing. The nodes of the removed word are kept.
+     *
+     * @param word the word to remove
+     */
+    synchronized void remove(String word) {
+        var node = root;
+        for (int i = 0; i < word.length() && node != null; i++) {
+            node = node.child(Character.toLowerCase(word.charAt(i)));
+        }
+        if (node != null) {
+            node.remove(word);
+        }
+    }
+
+    /**
+     * Pass all the words that start with the prefix, ignoring the character case, to the consumer.
+     *
+     * @param prefix   the prefix the user typed
+     * @param consumer the consumer of the matching words
+     */
+    synchronized void collect(String prefix, Consumer<String> consumer) {
+        var node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(Character.toLowerCase(prefix.charAt(i)));
+        }
+        if (node != null) {
+            node.collect(consumer);
+        }
+    }
+
+    private static class Node {
+        private static final char[] NO_CHARS = new char[0];
+        private static final Node[] NO_NODES = new Node[0];
+        private static final String[] NO_WORDS = new String[0];
+        private char[] chars = NO_CHARS;
+        private Node[] children = NO_NODES;
+        // the words ending here, usually one, more if they differ only in character case
+        private String[] words = NO_WORDS;
+
+        private Node child(char c) {
+            final int i = Arrays.binarySearch(chars, c);
+            return i < 0 ? null : children[i];
+        }
+
+        private Node childOrNew(char c) {
+            final int i = Arrays.binarySearch(chars, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            final int at = -i - 1;
+            final var child = new Node();
+            final var newChars = new char[chars.length + 1];
+            final var newChildren = new Node[children.length + 1];
+            System.arraycopy(chars, 0, newChars, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newChars[at] = c;
+            newChildren[at] = child;
+            System.arraycopy(chars, at, newChars, at + 1, chars.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            chars = newChars;
+            children = newChildren;
+            return child;
+        }
+
+        private void add(String word) {
+            for (final var w : words) {
+                if (w.equals(word)) {
+                    return;
+                }
+            }
+            words = Arrays.copyOf(words, words.length + 1);
+            words[words.length - 1] = word;
+        }
+
+        private void remove(String word) {
+            for (int i = 0; i < words.length; i++) {
+                if (words[i].equals(word)) {
+                    final var newWords = new String[words.length - 1];
+                    System.arraycopy(words, 0, newWords, 0, i);
+                    System.arraycopy(words, i + 1, newWords, i, words.length - i - 1);
+                    words = newWords;
+                    return;
+                }
+            }
+        }
+
+        private void collect(Consumer<String> consumer) {
+            for (final var word : words) {
+                consumer.accept(word);
+            }
+            for (final var child : children) {
+                child.collect(consumer);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package javax0.repl;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The environments used by {@link Repl#eval(String)}.
+ * <p>
+ * An environment, its message object and its output buffer are reused for many lines. The pool has a few slots and
+ * the thread uses the slot its identifier selects, thus the threads rarely compete for the same slot and taking and
+ * returning an environment needs only one atomic operation and no lock. When the slot of the thread is empty,
+ * because another thread uses its environment, a new environment is created. When the slot is full the environment
+ * returned is dropped.
+ */
+class EnvironmentPool {
+    private static final int SLOTS = 2 * Runtime.getRuntime().availableProcessors();
+    // the slots are this many elements apart, so that two slots are not on the same cache line
+    private static final int SPACING = 16;
+    // an output buffer larger than this is not kept for the next line
+    private static final int MAX_RETAINED_OUTPUT = 1 << 16;
+
+    private final Repl repl;
+    private final AtomicReferenceArray<Pooled> slots = new AtomicReferenceArray<>(SLOTS * SPACING);
+
+    EnvironmentPool(Repl repl) {
+        this.repl = repl;
+    }
+
+    /**
+     * An environment whose console writes into a buffer and cannot read.
+     */
+    static final class Pooled {
+        final ReplCommandEnvironment env;
+        final StringWriter output = new StringWriter();
+
+        private Pooled(Repl repl) {
+            env = new ReplCommandEnvironment(repl);
+            env.message = new Message();
+            env.console = new Jobs.JobConsole(new PrintWriter(output));
+        }
+    }
+
+    Pooled take() {
+        final var pooled = slots.getAndSet(slot(), null);
+        return pooled == null ? new Pooled(repl) : pooled;
+    }
+
+    /**
+     * Return the environment to the pool. The messages and the output are deleted.
+     *
+     * @param pooled the environment, which was taken from this pool
+     */
+    void release(Pooled pooled) {
+        if (pooled.env.cancelled) {
+            // the command may still be running and using the environment
+            return;
+        }
+        final var buffer = pooled.output.getBuffer();
+        if (buffer.capacity() > MAX_RETAINED_OUTPUT) {
+            return;
+        }
+        buffer.setLength(0);
+        pooled.env.message.clear();
+        pooled.env.input = null;
+        slots.compareAndSet(slot(), null, pooled);
+    }
+
+    private static int slot() {
+        return (int) (Thread.currentThread().getId() % SLOTS) * SPACING;
+    }
+}
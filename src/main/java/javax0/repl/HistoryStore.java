@@ -0,0 +1,318 @@
+package javax0.repl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The history of the lines the user typed.
+ * <p>
+ * The history is kept in memory and, when a file is given, in an append-only file. Every line is a record in the
+ * file: the length of the line in UTF-8 bytes as a four byte integer followed by the bytes. The file is memory mapped
+ * when it is loaded. A line that is typed again is moved to the end of the history, the older occurrence is dropped.
+ * The number of the lines is limited, the oldest lines are dropped when there are more. The dropped lines remain in
+ * the file until the dropped lines are more than the limit, then the file is rewritten with the kept lines only.
+ * <p>
+ * The lines are searched using an index of the three character sequences (trigrams) in the lines. The index is built
+ * when the history is first searched. Searching looks at the lines that contain the rarest trigram of the searched
+ * text only, thus searching for anything that is three or more characters long does not need to scan the whole
+ * history.
+ */
+class HistoryStore implements AutoCloseable {
+    private static final int MAGIC = 0x52504C48; // "RPLH"
+    private final Path file;
+    private final Map<String, Integer> slotOf = new HashMap<>();
+    private int maxSize;
+    // the lines in the order they were added, the dropped lines are null
+    private String[] lines = new String[16];
+    private int end;
+    private int first;
+    private int live;
+    private Map<Long, Postings> index;
+    private FileChannel channel;
+
+    /**
+     * Create a history that is kept in memory only.
+     *
+     * @param maxSize the maximum number of lines kept
+     */
+    HistoryStore(int maxSize) {
+        this.file = null;
+        this.maxSize = Math.max(maxSize, 1);
+    }
+
+    /**
+     * Create a history loading the lines from the file. The file is created if it does not exist.
+     *
+     * @param file    the history file
+     * @param maxSize the maximum number of lines kept
+     * @throws IOException if the file cannot be read or it is not a history file
+     */
+    HistoryStore(Path file, int maxSize) throws IOException {
+        this.file = file;
+        this.maxSize = Math.max(maxSize, 1);
+        load();
+    }
+
+    private static class Postings {
+        private int[] slots = new int[4];
+        private int size;
+
+        private void add(int slot) {
+            if (size > 0 && slots[size - 1] == slot) {
+                return;
+            }
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+    }
+
+    private void load() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        final long size = channel.size();
+        if (size == 0) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, MAGIC));
+            return;
+        }
+        final var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (size < 4 || buffer.getInt() != MAGIC) {
+            channel.close();
+            throw new IOException("'" + file + "' is not a history file");
+        }
+        var valid = buffer.position();
+        while (buffer.remaining() >= 4) {
+            final int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                break;
+            }
+            final var bytes = new byte[length];
+            buffer.get(bytes);
+            append(new String(bytes, StandardCharsets.UTF_8));
+            valid = buffer.position();
+        }
+        if (valid < size) {
+            // the last record was not written completely
+            channel.truncate(valid);
+        }
+        if (end - live > maxSize) {
+            compact();
+        }
+    }
+
+    /**
+     * Add a line to the end of the history. Empty lines and the line that is already the last one are not added.
+     *
+     * @param line the line the user typed
+     * @throws IOException if the line cannot be written to the file
+     */
+    synchronized void add(String line) throws IOException {
+        if (line.isBlank() || (end > 0 && line.equals(lines[end - 1]))) {
+            return;
+        }
+        append(line);
+        if (channel != null) {
+            final var bytes = line.getBytes(StandardCharsets.UTF_8);
+            final var record = ByteBuffer.allocate(4 + bytes.length).putInt(bytes.length).put(bytes).flip();
+            channel.position(channel.size());
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        }
+        if (end - live > maxSize) {
+            compact();
+        }
+    }
+
+    private void append(String line) {
+        final var old = slotOf.get(line);
+        if (old != null) {
+            lines[old] = null;
+            live--;
+        }
+        if (end == lines.length) {
+            lines = Arrays.copyOf(lines, end * 2);
+        }
+        lines[end] = line;
+        slotOf.put(line, end);
+        if (index != null) {
+            index(line, end);
+        }
+        end++;
+        live++;
+        dropOldest();
+    }
+
+    private void dropOldest() {
+        while (live > maxSize) {
+            while (lines[first] == null) {
+                first++;
+            }
+            slotOf.remove(lines[first]);
+            lines[first] = null;
+            live--;
+        }
+    }
+
+    /**
+     * Drop the removed lines from the memory and rewrite the file with the kept lines. The file is written to a
+     * temporary file first and then it is moved in the place of the history file, thus a crash does not lose the
+     * history.
+     */
+    private void compact() throws IOException {
+        final var kept = new String[Math.max(16, Integer.highestOneBit(live) * 2)];
+        int n = 0;
+        for (int i = first; i < end; i++) {
+            if (lines[i] != null) {
+                kept[n] = lines[i];
+                slotOf.put(kept[n], n);
+                n++;
+            }
+        }
+        lines = kept;
+        end = n;
+        first = 0;
+        index = null;
+        if (channel != null) {
+            final var temp = Files.createTempFile(file.toAbsolutePath().getParent(), "history", ".tmp");
+            try (final var out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                var buffer = ByteBuffer.allocate(1 << 16);
+                buffer.putInt(MAGIC);
+                for (int i = 0; i < end; i++) {
+                    final var bytes = lines[i].getBytes(StandardCharsets.UTF_8);
+                    if (buffer.remaining() < 4 + bytes.length) {
+                        write(out, buffer);
+                        if (buffer.capacity() < 4 + bytes.length) {
+                            buffer = ByteBuffer.allocate(4 + bytes.length);
+                        }
+                    }
+                    buffer.putInt(bytes.length).put(bytes);
+                }
+                write(out, buffer);
+            }
+            channel.close();
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+    }
+
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Set the maximum number of lines kept dropping the oldest lines if there are more.
+     *
+     * @param maxSize the new maximum number of lines
+     * @throws IOException if the file cannot be rewritten
+     */
+    synchronized void maxSize(int maxSize) throws IOException {
+        this.maxSize = Math.max(maxSize, 1);
+        dropOldest();
+        if (end - live > this.maxSize) {
+            compact();
+        }
+    }
+
+    /**
+     * @return the number of the lines in the history
+     */
+    synchronized int size() {
+        return live;
+    }
+
+    /**
+     * @param n the maximum number of the lines to return
+     * @return the last {@code n} lines, the oldest first
+     */
+    synchronized List<String> recent(int n) {
+        final var result = new ArrayList<String>(Math.min(n, live));
+        for (int i = end - 1; i >= first && result.size() < n; i--) {
+            if (lines[i] != null) {
+                result.add(lines[i]);
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Find the lines that contain the text.
+     *
+     * @param text  the text to search
+     * @param limit the maximum number of the lines to return
+     * @return the matching lines, the most recent first
+     */
+    synchronized List<String> search(String text, int limit) {
+        final var result = new ArrayList<String>();
+        if (text.length() < 3) {
+            for (int i = end - 1; i >= first && result.size() < limit; i--) {
+                if (lines[i] != null && lines[i].contains(text)) {
+                    result.add(lines[i]);
+                }
+            }
+            return result;
+        }
+        if (index == null) {
+            index = new HashMap<>();
+            for (int i = first; i < end; i++) {
+                if (lines[i] != null) {
+                    index(lines[i], i);
+                }
+            }
+        }
+        Postings rarest = null;
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            final var postings = index.get(trigram(text, i));
+            if (postings == null) {
+                return result;
+            }
+            if (rarest == null || postings.size < rarest.size) {
+                rarest = postings;
+            }
+        }
+        for (int i = rarest.size - 1; i >= 0 && result.size() < limit; i--) {
+            final var line = lines[rarest.slots[i]];
+            // the slots of the dropped lines are still in the index
+            if (line != null && line.contains(text)) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    private void index(String line, int slot) {
+        for (int i = 0; i + 3 <= line.length(); i++) {
+            index.computeIfAbsent(trigram(line, i), k -> new Postings()).add(slot);
+        }
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
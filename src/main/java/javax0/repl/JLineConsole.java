@@ -1,7 +1,10 @@
 package javax0.repl;
 
+import org.jline.reader.EndOfFileException;
 import org.jline.reader.LineReader;
 import org.jline.reader.LineReaderBuilder;
+import org.jline.reader.UserInterruptException;
+import org.jline.reader.impl.history.DefaultHistory;
 import org.jline.terminal.Terminal;
 import org.jline.terminal.TerminalBuilder;
 
@@ -14,11 +17,29 @@ public class JLineConsole implements LocalConsole {
     private final Terminal terminal;
     private final LocalConsole fallback;
     private final LineReader reader;
+    private Terminal.SignalHandler defaultIntHandler;
 
     public JLineConsole(List<CommandDefinition> commandDefinitions, Set<String> aliasNames) {
+        this(ReplCompleter.of(commandDefinitions, aliasNames), List.of());
+    }
+
+    /**
+     * @param completer the completer that the Repl keeps up to date when commands and aliases are defined
+     * @param history   the recent lines of the history, the oldest first, that the user can browse and search with
+     *                  Ctrl-R
+     */
+    JLineConsole(ReplCompleter completer, List<String> history) {
         terminal = getTerminal();
-        reader = terminal == null ? null : LineReaderBuilder.builder().completer(new ReplCompleter(commandDefinitions,aliasNames)).terminal(terminal).build();
-        fallback = terminal != null ? null : new BufferedReaderConsole();
+        if (terminal == null) {
+            reader = null;
+            fallback = new BufferedReaderConsole();
+        } else {
+            final var lines = new DefaultHistory();
+            history.forEach(lines::add);
+            reader = LineReaderBuilder.builder().completer(completer).terminal(terminal).history(lines)
+                .variable(LineReader.HISTORY_SIZE, Math.max(history.size(), 500)).build();
+            fallback = null;
+        }
     }
 
     private static Terminal getTerminal() {
@@ -33,8 +54,14 @@ public class JLineConsole implements LocalConsole {
     public String readLine(String msg) {
         if (reader == null) {
             return fallback.readLine(msg);
-        } else {
+        }
+        try {
             return reader.readLine(msg);
+        } catch (UserInterruptException e) {
+            // Ctrl-C at the prompt drops the line that was typed so far
+            return "";
+        } catch (EndOfFileException e) {
+            return null;
         }
     }
 
@@ -46,4 +73,27 @@ public class JLineConsole implements LocalConsole {
             return terminal.writer();
         }
     }
+
+    @Override
+    public int height() {
+        return terminal == null ? 0 : Math.max(terminal.getHeight(), 0);
+    }
+
+    @Override
+    public void onInterrupt(Runnable action) {
+        if (terminal == null) {
+            return;
+        }
+        if (action == null) {
+            if (defaultIntHandler != null) {
+                terminal.handle(Terminal.Signal.INT, defaultIntHandler);
+                defaultIntHandler = null;
+            }
+        } else {
+            final var previous = terminal.handle(Terminal.Signal.INT, signal -> action.run());
+            if (defaultIntHandler == null) {
+                defaultIntHandler = previous;
+            }
+        }
+    }
 }
@@ -0,0 +1,210 @@
+package javax0.repl;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The commands of a Repl session that were started in the background with a trailing {@code &}.
+ * <p>
+ * Every job runs on its own daemon thread. The output of the command is collected into a buffer and the messages
+ * into a separate {@link Message} object. They are printed to the console when the user waits for the job with the
+ * {@code wait} command. Jobs cannot read the console, {@link LocalConsole#readLine(String)} returns {@code null}
+ * for them.
+ */
+class Jobs {
+    private static final ExecutorService pool = Executors.newCachedThreadPool(r -> {
+        final var thread = new Thread(r, "repl-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<Integer, Job> jobs = new LinkedHashMap<>();
+    private int lastId = 0;
+
+    static class Job {
+        final int id;
+        final String line;
+        final ReplCommandEnvironment env;
+        private final StringWriter output = new StringWriter();
+        private final long start = System.nanoTime();
+        private volatile long end;
+        private Future<?> future;
+        private boolean notified;
+
+        private Job(int id, String line, ReplCommandEnvironment env) {
+            this.id = id;
+            this.line = line;
+            this.env = env;
+            env.message = new Message();
+            env.console = new JobConsole(new PrintWriter(output));
+        }
+
+        boolean isRunning() {
+            return !future.isDone();
+        }
+
+        private String state() {
+            if (future.isCancelled()) {
+                return "killed";
+            }
+            if (!future.isDone()) {
+                return "running";
+            }
+            return env.message.errorCount() > 0 ? "failed" : "done";
+        }
+
+        private long elapsedMillis() {
+            return ((end == 0 ? System.nanoTime() : end) - start) / 1_000_000;
+        }
+
+        private String describe() {
+            return "[" + id + "] " + state() + " " + elapsedMillis() + "ms  " + line + "\n";
+        }
+    }
+
+    /**
+     * The console of the commands that cannot read the console. It is also used for the commands replayed from a
+     * journal.
+     */
+    static class JobConsole implements LocalConsole {
+        private final PrintWriter writer;
+
+        JobConsole(PrintWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public String readLine(String msg) {
+            return null;
+        }
+
+        @Override
+        public PrintWriter writer() {
+            return writer;
+        }
+    }
+
+    /**
+     * Start a command in the background.
+     *
+     * @param line     the line as the user typed it without the trailing {@code &}
+     * @param env      an environment that was used to resolve the line. The job replaces its console and message.
+     * @param executor the code that executes the command using the environment
+     * @return the job that was started
+     */
+    synchronized Job start(String line, ReplCommandEnvironment env, Runnable executor) {
+        final var job = new Job(++lastId, line, env);
+        jobs.put(job.id, job);
+        job.future = pool.submit(() -> {
+            try {
+                executor.run();
+            } catch (Exception e) {
+                job.env.message.error("" + e);
+            } finally {
+                job.end = System.nanoTime();
+            }
+        });
+        return job;
+    }
+
+    /**
+     * @param id the identifier of the job
+     * @return the job or {@code null} if there is no such job
+     */
+    synchronized Job get(int id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * @return the jobs in the order they were started
+     */
+    synchronized List<Job> all() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    /**
+     * @return the number of the jobs that are still running
+     */
+    synchronized int running() {
+        return (int) jobs.values().stream().filter(Job::isRunning).count();
+    }
+
+    /**
+     * Print the list of the jobs.
+     *
+     * @param w the writer to print to
+     */
+    void list(PrintWriter w) {
+        final var all = all();
+        if (all.isEmpty()) {
+            w.print("There are no jobs\n");
+        }
+        for (final var job : all) {
+            w.print(job.describe());
+            job.notified |= !job.isRunning();
+        }
+    }
+
+    /**
+     * Wait for the job to finish, print its output and its messages and remove it from the list.
+     *
+     * @param job the job to wait for
+     * @param w   the writer to print to
+     * @throws InterruptedException if the waiting thread was interrupted, the job keeps running in this case
+     */
+    void await(Job job, PrintWriter w) throws InterruptedException {
+        try {
+            job.future.get();
+        } catch (ExecutionException | CancellationException ignored) {
+            // the job itself records the exceptions in its messages, cancellation is shown as the state
+        }
+        synchronized (this) {
+            jobs.remove(job.id);
+        }
+        w.print(job.describe());
+        w.print(job.output.toString());
+        job.env.message.writeTo(w);
+    }
+
+    /**
+     * Cancel the job interrupting the thread that executes it. The command has to react to the interrupt to stop.
+     *
+     * @param job the job to kill
+     * @return {@code true} if the job was running
+     */
+    boolean kill(Job job) {
+        job.env.cancelled = true;
+        return job.future.cancel(true);
+    }
+
+    /**
+     * Kill all the running jobs.
+     */
+    void killAll() {
+        all().forEach(this::kill);
+    }
+
+    /**
+     * Print a line for every job that has finished since the last time this method or {@link #list(PrintWriter)}
+     * was called.
+     *
+     * @param w the writer to print to
+     */
+    void notifyFinished(PrintWriter w) {
+        for (final var job : all()) {
+            if (!job.notified && !job.isRunning()) {
+                job.notified = true;
+                w.print(job.describe());
+            }
+        }
+    }
+}
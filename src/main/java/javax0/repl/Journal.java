@@ -0,0 +1,130 @@
+package javax0.repl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * The journal of the commands executed in a session.
+ * <p>
+ * The journal is a binary file the entries are appended to. An entry contains the time the command was executed,
+ * the keyword of the command after the aliases and the abbreviations were resolved, the outcome and the rest of the
+ * line after the keyword. Because the keyword is already resolved the entries can be executed again without parsing
+ * the keyword even if aliases or commands were defined since.
+ */
+class Journal implements AutoCloseable {
+    /**
+     * The keyword of the entries of pipelines, see {@link Pipeline}. The line of such an entry contains the commands
+     * of the pipeline with their keywords as they are defined.
+     */
+    static final String PIPELINE = "|";
+    private static final int MAGIC = 0x52504C4A; // "RPLJ"
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte OK = 0;
+    private static final byte FAILED = 1;
+
+    private final DataOutputStream out;
+
+    /**
+     * Open the journal for appending. The file is created if it does not exist.
+     *
+     * @param file the journal file
+     * @throws IOException if the file cannot be opened or it is not a journal
+     */
+    Journal(Path file) throws IOException {
+        final var exists = Files.exists(file) && Files.size(file) > 0;
+        if (exists) {
+            try (final var in = new DataInputStream(Files.newInputStream(file))) {
+                checkMagic(in, file);
+            }
+        }
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        if (!exists) {
+            out.writeInt(MAGIC);
+            out.flush();
+        }
+    }
+
+    static class Entry {
+        final long time;
+        final String keyword;
+        final boolean ok;
+        final String line;
+
+        private Entry(long time, String keyword, boolean ok, String line) {
+            this.time = time;
+            this.keyword = keyword;
+            this.ok = ok;
+            this.line = line;
+        }
+    }
+
+    private static void checkMagic(DataInputStream in, Path file) throws IOException {
+        try {
+            if (in.readInt() == MAGIC) {
+                return;
+            }
+        } catch (EOFException ignored) {
+        }
+        throw new IOException("'" + file + "' is not a journal file");
+    }
+
+    /**
+     * Append an entry to the journal. The entry is written to the file before the method returns.
+     *
+     * @param keyword the keyword of the command as it is defined
+     * @param ok      {@code true} if the command was executed without error
+     * @param line    the line after the keyword
+     * @throws IOException if the entry cannot be written
+     */
+    synchronized void record(String keyword, boolean ok, String line) throws IOException {
+        final var bytes = line.getBytes(StandardCharsets.UTF_8);
+        out.writeLong(System.currentTimeMillis());
+        out.writeUTF(keyword);
+        out.writeByte(ok ? OK : FAILED);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+    }
+
+    /**
+     * Read all the entries of a journal. An entry that was not written completely at the end of the file is ignored.
+     *
+     * @param file     the journal file
+     * @param consumer gets the entries in the order they were written
+     * @throws IOException if the file cannot be read or it is not a journal
+     */
+    static void read(Path file, Consumer<Entry> consumer) throws IOException {
+        try (final var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            checkMagic(in, file);
+            for (; ; ) {
+                final Entry entry;
+                try {
+                    final var time = in.readLong();
+                    final var keyword = in.readUTF();
+                    final var ok = in.readByte() == OK;
+                    final var bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    entry = new Entry(time, keyword, ok, new String(bytes, StandardCharsets.UTF_8));
+                } catch (EOFException e) {
+                    return;
+                }
+                consumer.accept(entry);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
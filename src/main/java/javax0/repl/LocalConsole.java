@@ -23,4 +23,22 @@ public interface LocalConsole {
      * @return the print writer to the console.
      */
     PrintWriter writer();
+
+    /**
+     * Register an action that is executed when the user presses Ctrl-C while a command is running. Only one action
+     * can be registered at a time. The default implementation does nothing, in this case Ctrl-C has its default
+     * effect, usually stopping the application.
+     *
+     * @param action the action or {@code null} to remove the action registered before
+     */
+    default void onInterrupt(Runnable action) {
+    }
+
+    /**
+     * @return the number of the lines on the screen or zero if it is not known, for example because the console is
+     * not a terminal
+     */
+    default int height() {
+        return 0;
+    }
 }
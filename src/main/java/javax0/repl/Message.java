@@ -1,34 +1,317 @@
 package javax0.repl;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
  * A message object used by commands to collect informational, warning and error messages.
+ * <p>
+ * Every message is an {@link Entry} that records the level, the time and the keyword of the command that issued it.
+ * A message that is the same as an earlier one of the same level and command is not stored again, the count of the
+ * earlier entry is increased. The number of the stored entries is limited, the messages issued when the object is
+ * full are only counted, and the text of a message given as a {@link Supplier} is not even created in that case.
+ * The Repl writes the messages to the console after every line and reuses the object for the next line.
  */
 public class Message {
-    private final List<String> errors = new ArrayList<>();
-    private final List<String> warnings = new ArrayList<>();
-    private final List<String> infos = new ArrayList<>();
+    static final int DEFAULT_CAPACITY = 1000;
+
+    public enum Level {
+        ERROR("[ERROR] "), WARNING("[WARNING] "), INFO("[INFO] ");
+
+        private final String prefix;
+
+        Level(String prefix) {
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * A message and the number of times it was issued.
+     */
+    public static final class Entry {
+        private final Level level;
+        private final long time;
+        private final String command;
+        private final String text;
+        private int count = 1;
+
+        private Entry(Level level, String command, String text) {
+            this(level, System.currentTimeMillis(), command, text);
+        }
+
+        private Entry(Level level, long time, String command, String text) {
+            this.level = level;
+            this.time = time;
+            this.command = command;
+            this.text = text;
+        }
+
+        public Level level() {
+            return level;
+        }
+
+        /**
+         * @return the time the message was first issued in milliseconds since the epoch
+         */
+        public long time() {
+            return time;
+        }
+
+        /**
+         * @return the keyword of the command that issued the message or {@code null} if it was issued by the Repl
+         */
+        public String command() {
+            return command;
+        }
+
+        public String text() {
+            return text;
+        }
+
+        /**
+         * @return the number of times the message was issued
+         */
+        public int count() {
+            return count;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            final var other = (Entry) o;
+            return level == other.level && Objects.equals(command, other.command) && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(level, command, text);
+        }
+    }
+
+    private final int capacity;
+    private final List<Entry> errors = new ArrayList<>();
+    private final List<Entry> warnings = new ArrayList<>();
+    private final List<Entry> infos = new ArrayList<>();
+    private final Map<Entry, Entry> stored = new HashMap<>();
+    private final int[] suppressed = new int[Level.values().length];
+    private int errorCount;
+    private String command;
+
+    public Message() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximum number of the different messages stored
+     */
+    public Message(int capacity) {
+        this.capacity = capacity;
+    }
 
     public void error(String s) {
-        errors.add(s);
+        add(Level.ERROR, s);
     }
 
     public void warning(String s) {
-        warnings.add(s);
+        add(Level.WARNING, s);
     }
 
     public void info(String s) {
-        infos.add(s);
+        add(Level.INFO, s);
+    }
+
+    /**
+     * Issue an error message that is created only if it is stored.
+     *
+     * @param s creates the text of the message
+     */
+    public void error(Supplier<String> s) {
+        add(Level.ERROR, s);
+    }
+
+    public void warning(Supplier<String> s) {
+        add(Level.WARNING, s);
+    }
+
+    public void info(Supplier<String> s) {
+        add(Level.INFO, s);
+    }
+
+    private void add(Level level, Supplier<String> s) {
+        if (stored.size() == capacity) {
+            suppress(level);
+        } else {
+            add(level, s.get());
+        }
+    }
+
+    private void add(Level level, String s) {
+        final var entry = new Entry(level, command, s);
+        final var same = stored.get(entry);
+        if (same != null) {
+            same.count++;
+        } else if (stored.size() == capacity) {
+            suppress(level);
+            return;
+        } else {
+            stored.put(entry, entry);
+            entries(level).add(entry);
+        }
+        if (level == Level.ERROR) {
+            errorCount++;
+        }
+    }
+
+    private void suppress(Level level) {
+        suppress(level, 1);
+    }
+
+    private void suppress(Level level, int n) {
+        suppressed[level.ordinal()] += n;
+        if (level == Level.ERROR) {
+            errorCount += n;
+        }
+    }
+
+    /**
+     * Add the messages of the other object to this one keeping the commands that issued them, their time and their
+     * counts. The other object is not changed.
+     *
+     * @param other the messages to add, for example the messages of a command that ran on another thread
+     */
+    void addAll(Message other) {
+        for (final var level : Level.values()) {
+            for (final var entry : other.entries(level)) {
+                final var copy = new Entry(level, entry.time, entry.command, entry.text);
+                copy.count = entry.count;
+                final var same = stored.get(copy);
+                if (same != null) {
+                    same.count += copy.count;
+                } else if (stored.size() == capacity) {
+                    suppress(level, copy.count);
+                    continue;
+                } else {
+                    stored.put(copy, copy);
+                    entries(level).add(copy);
+                }
+                if (level == Level.ERROR) {
+                    errorCount += copy.count;
+                }
+            }
+            suppress(level, other.suppressed[level.ordinal()]);
+        }
+    }
+
+    private List<Entry> entries(Level level) {
+        switch (level) {
+            case ERROR:
+                return errors;
+            case WARNING:
+                return warnings;
+            default:
+                return infos;
+        }
+    }
+
+    /**
+     * Set the keyword of the command that issues the messages from now on.
+     *
+     * @param command the keyword or {@code null} when the messages come from the Repl itself
+     * @return the keyword that was set before
+     */
+    String command(String command) {
+        final var previous = this.command;
+        this.command = command;
+        return previous;
     }
 
     public String message() {
         final var sb = new StringBuilder();
-        errors.forEach(s -> sb.append("[ERROR] ").append(s).append("\n"));
-        warnings.forEach(s -> sb.append("[WARNING] ").append(s).append("\n"));
-        infos.forEach(s -> sb.append("[INFO] ").append(s).append("\n"));
+        for (final var level : Level.values()) {
+            for (final var entry : entries(level)) {
+                sb.append(level.prefix).append(entry.text);
+                if (entry.count > 1) {
+                    sb.append(" (").append(entry.count).append(" times)");
+                }
+                sb.append('\n');
+            }
+            if (suppressed[level.ordinal()] > 0) {
+                sb.append(level.prefix).append(suppressedText(level)).append('\n');
+            }
+        }
         return sb.toString();
     }
 
+    /**
+     * @return the stored messages, the errors first, then the warnings and the informational messages
+     */
+    public List<Entry> entries() {
+        final var all = new ArrayList<Entry>(stored.size());
+        all.addAll(errors);
+        all.addAll(warnings);
+        all.addAll(infos);
+        return all;
+    }
+
+    /**
+     * @param level the level of the messages
+     * @return the number of the messages that were not stored because the object was full
+     */
+    public int suppressed(Level level) {
+        return suppressed[level.ordinal()];
+    }
+
+    private String suppressedText(Level level) {
+        return suppressed[level.ordinal()] + " more " + level.name().toLowerCase() + " messages were not shown";
+    }
+
+    /**
+     * Print the messages to the writer in the same format as {@link #message()} returns them and delete them from
+     * this object, so that the object can be used to collect the messages again.
+     *
+     * @param w the writer to print the messages to
+     */
+    void writeTo(PrintWriter w) {
+        for (final var level : Level.values()) {
+            for (final var entry : entries(level)) {
+                w.append(level.prefix).append(entry.text);
+                if (entry.count > 1) {
+                    w.append(" (").print(entry.count);
+                    w.append(" times)");
+                }
+                w.append('\n');
+            }
+            if (suppressed[level.ordinal()] > 0) {
+                w.append(level.prefix).append(suppressedText(level)).append('\n');
+            }
+        }
+        clear();
+    }
+
+    /**
+     * Delete the messages, so that the object can be used to collect the messages again.
+     */
+    void clear() {
+        errors.clear();
+        warnings.clear();
+        infos.clear();
+        stored.clear();
+        Arrays.fill(suppressed, 0);
+        errorCount = 0;
+    }
+
+    /**
+     * @return the number of the error messages issued, including the repeated and the not stored ones
+     */
+    int errorCount() {
+        return errorCount;
+    }
 }
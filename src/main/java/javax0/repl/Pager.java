@@ -0,0 +1,182 @@
+package javax0.repl;
+
+import java.io.BufferedReader;
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The writer of the {@link PagingConsole}.
+ * <p>
+ * The output is written to the console until it fills the screen. The rest of the output is captured: it is
+ * collected in a fixed size buffer and when the buffer is full its content is appended to a temporary file. This way
+ * the memory use does not depend on the size of the output and the command is not blocked by the terminal. When the
+ * command has finished {@link #page()} shows the captured output page by page asking the user after every page.
+ */
+class Pager extends Writer {
+    static final int BUFFER_SIZE = 1 << 16;
+    private static final String MORE = "-- more -- Enter: next page, a: all, q: quit ";
+
+    private final LocalConsole console;
+    private final Writer out;
+    private final int pageLines;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private int length;
+    private int linesShown;
+    private boolean capturing;
+    private Path spillFile;
+    private FileChannel spill;
+
+    /**
+     * @param console   the console the output is written to and the answers of the user are read from
+     * @param pageLines the number of lines on a page
+     */
+    Pager(LocalConsole console, int pageLines) {
+        this.console = console;
+        this.out = console.writer();
+        this.pageLines = pageLines;
+    }
+
+    @Override
+    public synchronized void write(char[] cbuf, int off, int len) throws IOException {
+        if (!capturing) {
+            int i = off;
+            final int end = off + len;
+            while (i < end && linesShown < pageLines) {
+                if (cbuf[i++] == '\n') {
+                    linesShown++;
+                }
+            }
+            out.write(cbuf, off, i - off);
+            if (i == end) {
+                return;
+            }
+            out.flush();
+            capturing = true;
+            len = end - i;
+            off = i;
+        }
+        capture(cbuf, off, len);
+    }
+
+    private void capture(char[] cbuf, int off, int len) throws IOException {
+        while (len > 0) {
+            if (length == buffer.length) {
+                spillBuffer(false);
+            }
+            final int n = Math.min(len, buffer.length - length);
+            System.arraycopy(cbuf, off, buffer, length, n);
+            length += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Append the content of the buffer to the temporary file.
+     *
+     * @param all {@code false} if a high surrogate at the end of the buffer has to be kept in the buffer, because
+     *            the other half of the character was not written yet
+     */
+    private void spillBuffer(boolean all) throws IOException {
+        if (spill == null) {
+            spillFile = Files.createTempFile("repl-output", ".txt");
+            spillFile.toFile().deleteOnExit();
+            spill = FileChannel.open(spillFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        final int n = !all && length > 0 && Character.isHighSurrogate(buffer[length - 1]) ? length - 1 : length;
+        final var bytes = encoder.reset().encode(CharBuffer.wrap(buffer, 0, n));
+        while (bytes.hasRemaining()) {
+            spill.write(bytes);
+        }
+        System.arraycopy(buffer, n, buffer, 0, length - n);
+        length -= n;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (!capturing) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Show the captured output page by page and start a new screen. It has to be called after the command has
+     * finished. The output of a command that is still running after its output was paged starts on a new screen.
+     */
+    synchronized void page() {
+        try {
+            if (capturing) {
+                try (final var reader = new BufferedReader(captured())) {
+                    showPages(reader);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            reset();
+        }
+    }
+
+    private Reader captured() throws IOException {
+        if (spill == null) {
+            return new CharArrayReader(buffer, 0, length);
+        }
+        spillBuffer(true);
+        spill.close();
+        spill = null;
+        return Channels.newReader(FileChannel.open(spillFile, StandardOpenOption.READ), StandardCharsets.UTF_8);
+    }
+
+    private void showPages(BufferedReader reader) throws IOException {
+        var all = false;
+        String line = reader.readLine();
+        while (line != null) {
+            final var answer = all ? "a" : console.readLine(MORE);
+            if (answer == null || answer.trim().equalsIgnoreCase("q")) {
+                break;
+            }
+            all = answer.trim().equalsIgnoreCase("a");
+            for (int i = 0; line != null && (all || i < pageLines - 1); i++) {
+                out.write(line);
+                out.write('\n');
+                line = reader.readLine();
+            }
+            out.flush();
+        }
+    }
+
+    private void reset() {
+        capturing = false;
+        linesShown = 0;
+        length = 0;
+        if (spillFile != null) {
+            try {
+                if (spill != null) {
+                    spill.close();
+                    spill = null;
+                }
+                Files.deleteIfExists(spillFile);
+            } catch (IOException ignored) {
+                // the file is deleted on exit
+            }
+            spillFile = null;
+        }
+    }
+}
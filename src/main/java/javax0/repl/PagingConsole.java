@@ -0,0 +1,46 @@
+package javax0.repl;
+
+import java.io.PrintWriter;
+
+/**
+ * {@link LocalConsole} implementation that pages the output written to another console. The output that does not fit
+ * on the screen is captured by a {@link Pager} and it is shown page by page before the next line is read from the
+ * console.
+ */
+class PagingConsole implements LocalConsole {
+    private final LocalConsole console;
+    private final Pager pager;
+    private final PrintWriter writer;
+
+    /**
+     * @param console   the console to write the output to
+     * @param pageLines the number of the lines on a page
+     */
+    PagingConsole(LocalConsole console, int pageLines) {
+        this.console = console;
+        pager = new Pager(console, pageLines);
+        writer = new PrintWriter(pager);
+    }
+
+    @Override
+    public String readLine(String msg) {
+        writer.flush();
+        pager.page();
+        return console.readLine(msg);
+    }
+
+    @Override
+    public PrintWriter writer() {
+        return writer;
+    }
+
+    @Override
+    public void onInterrupt(Runnable action) {
+        console.onInterrupt(action);
+    }
+
+    @Override
+    public int height() {
+        return console.height();
+    }
+}
@@ -4,11 +4,37 @@ import java.util.*;
 
 /**
  * A parameter parser that is to parse the command line and after that to query the command parameters.
+ * <p>
+ * The parser does not split the line into strings. It walks through the line once and records the start and end
+ * offsets of the keys and the values. Strings are created only when a value is queried and the primitive accessors,
+ * like {@link #getInt(String, int)} parse the value directly from the line.
  */
 public class ParameterParser {
+    // each token occupies SLOT consecutive elements of the array 'tokens'
+    private static final int KEY_START = 0;
+    private static final int KEY_END = 1;
+    private static final int VALUE_START = 2;
+    private static final int VALUE_END = 3;
+    private static final int FLAGS = 4;
+    private static final int SLOT = 5;
 
-    private final Map<String, String> keys = new HashMap<>();
-    private final List<String> values = new ArrayList<>();
+    // the value has to be unescaped before returning it
+    private static final int ESCAPED_VALUE = 1;
+    // the token is a stand alone parameter, has no key
+    private static final int POSITIONAL = 2;
+
+    private final String line;
+    private int[] tokens = new int[4 * SLOT];
+    // the key of the token if it is not simply a part of the line
+    private String[] keys = new String[4];
+    // the values resolved from a value set, allocated only when there are value sets
+    private String[] resolved;
+    private int size;
+    private int count;
+
+    private ParameterParser(String line) {
+        this.line = line;
+    }
 
     /**
      * Parse a string and build up the parsed structures.
@@ -23,6 +49,11 @@ public class ParameterParser {
      * without an associated key can be mixed between, before and after the keys.
      * <p>
      * The keys, in case they are defined in the argument {@code parameters} are case insensitive.
+     * <p>
+     * Values and stand alone parameters can contain spaces and {@code =} characters if they are enclosed between
+     * {@code "} or {@code '} characters, like {@code key="a value = with spaces"}. Between {@code '} characters
+     * every character stands for itself. Outside of {@code '} characters the {@code \} character escapes the next
+     * character, thus {@code key=a\ b} and {@code key="a \"b\""} are also possible.
      *
      * @param line       the line that contains the keys and also the arguments
      * @param parameters a set of parameter names that are allowed on the line. In case this parameter is null any
@@ -33,27 +64,244 @@ public class ParameterParser {
      * @throws IllegalArgumentException if the line is not properly formatted
      */
     static ParameterParser parse(String line, Set<String> parameters) {
-        final var it = new ParameterParser();
-        final var parts = line.split("\\s+");
-        for (final var part : parts) {
-            final var eq = part.indexOf("=");
-            if (eq == -1) {
-                if (part.length() > 0) {
-                    it.values.add(part);
+        return parse(line, parameters, Map.of());
+    }
+
+    /**
+     * The same as {@link #parse(String, Set)} but the values of the keys that have a value set are also resolved
+     * during parsing. The parsed structure will contain the full value as listed in the value set even if the user
+     * typed only a short prefix.
+     *
+     * @param line       the line that contains the keys and also the arguments
+     * @param parameters a set of parameter names that are allowed on the line, see {@link #parse(String, Set)}
+     * @param values     the sets of the possible values for the parameters that have a limited set of values
+     * @return the parsed structure object that can later be queried
+     * @throws IllegalArgumentException if the line is not properly formatted
+     */
+    static ParameterParser parse(String line, Set<String> parameters, Map<String, ValueSet> values) {
+        final var it = new ParameterParser(line);
+        final int n = line.length();
+        int i = 0;
+        for (; ; ) {
+            while (i < n && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            if (i >= n) {
+                return it;
+            }
+            final int start = i;
+            int eq = -1;
+            int keySpecials = 0;
+            int valueSpecials = 0;
+            char quote = 0;
+            for (; i < n; i++) {
+                final char c = line.charAt(i);
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                        valueSpecials++;
+                    } else if (c == '\\' && quote == '"' && i + 1 < n) {
+                        i++;
+                        valueSpecials++;
+                    }
+                    continue;
+                }
+                if (c == '\\' && i + 1 < n) {
+                    i++;
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (Character.isWhitespace(c)) {
+                    break;
+                } else if (c == '=' && eq == -1) {
+                    eq = i;
+                    keySpecials = valueSpecials;
+                    valueSpecials = 0;
+                    continue;
+                } else {
+                    continue;
                 }
+                valueSpecials++;
+            }
+            if (quote != 0) {
+                throw new IllegalArgumentException("There is an unterminated " + quote + " on the line");
+            }
+            if (eq == -1) {
+                it.add(null, -1, -1, start, i, valueSpecials, POSITIONAL);
+                it.count++;
             } else {
-                final var key = part.substring(0, eq);
-                final var value = part.substring(eq + 1);
-                it.keys.put(findIt(key, parameters), value);
+                final String key;
+                if (keySpecials > 0) {
+                    key = findIt(unescape(line, start, eq), parameters);
+                } else if (parameters instanceof ValueSet) {
+                    key = ((ValueSet) parameters).resolve(line, start, eq);
+                } else if (parameters != null) {
+                    key = findIt(line.substring(start, eq), parameters);
+                } else {
+                    key = null;
+                }
+                it.add(key, start, eq, eq + 1, i, valueSpecials, 0);
+                final var valueSet = values.isEmpty() ? null : values.get(key == null ? it.key(it.size - 1) : key);
+                if (valueSet != null) {
+                    it.resolveValue(it.size - 1, valueSet);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the parsed structure, without the line, so that it can be restored calling
+     * {@link #readFrom(String, ScriptCache.Input)} without parsing the line again.
+     *
+     * @param out the compiled script to write to
+     */
+    void writeTo(ScriptCache.Output out) {
+        out.varInt(size);
+        out.varInt(count);
+        for (int i = 0; i < size * SLOT; i++) {
+            // the offsets of the missing keys are -1
+            out.varInt(tokens[i] + 1);
+        }
+        for (int i = 0; i < size; i++) {
+            out.symbol(keys[i]);
+        }
+        out.varInt(resolved == null ? 0 : 1);
+        if (resolved != null) {
+            for (int i = 0; i < size; i++) {
+                out.symbol(i < resolved.length ? resolved[i] : null);
+            }
+        }
+    }
+
+    /**
+     * Restore the structure written by {@link #writeTo(ScriptCache.Output)}.
+     *
+     * @param line the line that was parsed
+     * @param in   the compiled script to read from
+     * @return the parsed structure
+     */
+    static ParameterParser readFrom(String line, ScriptCache.Input in) {
+        final var it = new ParameterParser(line);
+        it.size = in.varInt();
+        it.count = in.varInt();
+        it.tokens = new int[Math.max(it.size, 1) * SLOT];
+        for (int i = 0; i < it.size * SLOT; i++) {
+            it.tokens[i] = in.varInt() - 1;
+        }
+        it.keys = new String[Math.max(it.size, 1)];
+        for (int i = 0; i < it.size; i++) {
+            it.keys[i] = in.symbol();
+        }
+        if (in.varInt() != 0) {
+            it.resolved = new String[it.keys.length];
+            for (int i = 0; i < it.size; i++) {
+                it.resolved[i] = in.symbol();
             }
         }
         return it;
     }
 
+    private String key(int i) {
+        return keys[i] != null ? keys[i] : line.substring(tokens[i * SLOT + KEY_START], tokens[i * SLOT + KEY_END]);
+    }
+
+    private void resolveValue(int i, ValueSet valueSet) {
+        final int base = i * SLOT;
+        final String value;
+        if ((tokens[base + FLAGS] & ESCAPED_VALUE) != 0) {
+            value = valueSet.resolve(value(i));
+        } else {
+            value = valueSet.resolve(line, tokens[base + VALUE_START], tokens[base + VALUE_END]);
+        }
+        if (resolved == null) {
+            resolved = new String[keys.length];
+        } else if (resolved.length < keys.length) {
+            resolved = Arrays.copyOf(resolved, keys.length);
+        }
+        resolved[i] = value;
+    }
+
+    private void add(String key, int keyStart, int keyEnd, int valueStart, int valueEnd, int specials, int flags) {
+        if (specials == 2 && valueEnd - valueStart >= 2) {
+            final char q = line.charAt(valueStart);
+            if ((q == '"' || q == '\'') && line.charAt(valueEnd - 1) == q) {
+                // a simply quoted value, the offsets can point inside the quotes
+                valueStart++;
+                valueEnd--;
+                specials = 0;
+            }
+        }
+        if ((size + 1) * SLOT > tokens.length) {
+            tokens = Arrays.copyOf(tokens, tokens.length * 2);
+            keys = Arrays.copyOf(keys, keys.length * 2);
+        }
+        final int base = size * SLOT;
+        tokens[base + KEY_START] = keyStart;
+        tokens[base + KEY_END] = keyEnd;
+        tokens[base + VALUE_START] = valueStart;
+        tokens[base + VALUE_END] = valueEnd;
+        tokens[base + FLAGS] = flags | (specials > 0 ? ESCAPED_VALUE : 0);
+        keys[size] = key;
+        size++;
+    }
+
+    /**
+     * Find a character on the line that is not between quotes and not escaped. The quotes and the escapes are the
+     * same as in the parameters, see {@link #parse(String, Set)}.
+     *
+     * @param line the line
+     * @param c    the character to find
+     * @param from the index to start the search at, which must not be between quotes
+     * @return the index of the character or -1 if there is no such character on the line
+     */
+    static int indexOfUnquoted(String line, char c, int from) {
+        char quote = 0;
+        for (int i = from; i < line.length(); i++) {
+            final char ch = line.charAt(i);
+            if (quote != 0) {
+                if (ch == quote) {
+                    quote = 0;
+                } else if (ch == '\\' && quote == '"') {
+                    i++;
+                }
+            } else if (ch == '\\') {
+                i++;
+            } else if (ch == '"' || ch == '\'') {
+                quote = ch;
+            } else if (ch == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remove the quotes and the escaping {@code \} characters from a part of the string.
+     */
+    private static String unescape(String s, int start, int end) {
+        final var sb = new StringBuilder(end - start);
+        char quote = 0;
+        for (int i = start; i < end; i++) {
+            final char c = s.charAt(i);
+            if (quote == 0 && (c == '"' || c == '\'')) {
+                quote = c;
+            } else if (quote != 0 && c == quote) {
+                quote = 0;
+            } else if (c == '\\' && quote != '\'' && i + 1 < end) {
+                sb.append(s.charAt(++i));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
     private static String findIt(String prefix, Set<String> set) {
         if (set == null) {
             return prefix;
         }
+        if (set instanceof ValueSet) {
+            return ((ValueSet) set).resolve(prefix);
+        }
         final List<String> commandsFound = new ArrayList<>();
         for (final var s : set) {
             if (s.toLowerCase().startsWith(prefix.toLowerCase())) {
@@ -70,6 +318,60 @@ public class ParameterParser {
                 "It matches " + String.join(",", commandsFound) + ".");
     }
 
+    /**
+     * Find the last token that has the given key. Last, because in case a key is present more than once on the line
+     * then the last one is used.
+     *
+     * @return the index of the token or -1 if the key is not on the line
+     */
+    private int indexOf(String key) {
+        for (int i = size - 1; i >= 0; i--) {
+            final int base = i * SLOT;
+            if ((tokens[base + FLAGS] & POSITIONAL) != 0) {
+                continue;
+            }
+            if (keys[i] != null) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            } else {
+                final int length = tokens[base + KEY_END] - tokens[base + KEY_START];
+                if (key.length() == length && line.regionMatches(tokens[base + KEY_START], key, 0, length)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the {@code n}-th stand alone parameter.
+     *
+     * @return the index of the token or -1 if there are not that many parameters on the line
+     */
+    private int indexOf(int n) {
+        if (n < 0 || n >= count) {
+            return -1;
+        }
+        for (int i = 0; i < size; i++) {
+            if ((tokens[i * SLOT + FLAGS] & POSITIONAL) != 0 && n-- == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String value(int i) {
+        if (resolved != null && i < resolved.length && resolved[i] != null) {
+            return resolved[i];
+        }
+        final int base = i * SLOT;
+        if ((tokens[base + FLAGS] & ESCAPED_VALUE) != 0) {
+            return unescape(line, tokens[base + VALUE_START], tokens[base + VALUE_END]);
+        }
+        return line.substring(tokens[base + VALUE_START], tokens[base + VALUE_END]);
+    }
+
     /**
      * Get the value associated with the key using a set of predefined values. The actual value that was parsed
      * from the line may be an unambiguous prefix of the possible values. In that case the value listed in the set
@@ -98,7 +400,7 @@ public class ParameterParser {
      * in case the key was not present on the line
      */
     public Optional<String> get(String key) {
-        return Optional.ofNullable(keys.get(key));
+        return Optional.ofNullable(getOrDefault(key, null));
     }
 
     /**
@@ -109,11 +411,20 @@ public class ParameterParser {
      * @return the parameter from the line or {@code Optional.empty()} if {@code i} is too large
      */
     public Optional<String> get(int i) {
-        if (i < values.size()) {
-            return Optional.ofNullable(values.get(i));
-        } else {
-            return Optional.empty();
-        }
+        return Optional.ofNullable(getOrDefault(i, null));
+    }
+
+    /**
+     * Get the {@code i}-th parameter (starting with 0) from the parsed line or the default value in case there are
+     * not that many parameters on the line.
+     *
+     * @param i   index of the parameter
+     * @param def the default value
+     * @return the parameter from the line or {@code def} if {@code i} is too large
+     */
+    public String getOrDefault(int i, String def) {
+        final int index = indexOf(i);
+        return index == -1 ? def : value(index);
     }
 
     /**
@@ -124,7 +435,8 @@ public class ParameterParser {
      * @return the value for the key
      */
     public String getOrDefault(String key, String def) {
-        return keys.getOrDefault(key, def);
+        final int index = indexOf(key);
+        return index == -1 ? def : value(index);
     }
 
     /**
@@ -137,10 +449,101 @@ public class ParameterParser {
      * @return the value for the key
      */
     public String getOrDefault(String key, String def, Set<String> values) {
-        final var value = get(key);
-        if (value.isEmpty()) {
+        final var value = getOrDefault(key, null);
+        if (value == null) {
             return def;
         }
-        return findIt(value.get(), values);
+        return findIt(value, values);
     }
+
+    /**
+     * @param key the full key as it was defined in the possible keys set
+     * @return {@code true} if the key was present on the line
+     */
+    public boolean has(String key) {
+        return indexOf(key) != -1;
+    }
+
+    /**
+     * @return the number of the parameters that stand alone on the line without a key
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Get the value associated with the key as an {@code int}. The value is parsed directly from the line.
+     *
+     * @param key we look for
+     * @param def the default value in case the key was not present on the line
+     * @return the value for the key
+     * @throws NumberFormatException if the value is not an integer number
+     */
+    public int getInt(String key, int def) {
+        final int index = indexOf(key);
+        if (index == -1) {
+            return def;
+        }
+        final int base = index * SLOT;
+        if ((tokens[base + FLAGS] & ESCAPED_VALUE) != 0) {
+            return Integer.parseInt(value(index));
+        }
+        return Integer.parseInt(line, tokens[base + VALUE_START], tokens[base + VALUE_END], 10);
+    }
+
+    /**
+     * Get the value associated with the key as a {@code long}. The value is parsed directly from the line.
+     *
+     * @param key we look for
+     * @param def the default value in case the key was not present on the line
+     * @return the value for the key
+     * @throws NumberFormatException if the value is not an integer number
+     */
+    public long getLong(String key, long def) {
+        final int index = indexOf(key);
+        if (index == -1) {
+            return def;
+        }
+        final int base = index * SLOT;
+        if ((tokens[base + FLAGS] & ESCAPED_VALUE) != 0) {
+            return Long.parseLong(value(index));
+        }
+        return Long.parseLong(line, tokens[base + VALUE_START], tokens[base + VALUE_END], 10);
+    }
+
+    /**
+     * Get the value associated with the key as a {@code boolean}. The values {@code true}, {@code yes} and
+     * {@code on} mean {@code true}, the values {@code false}, {@code no} and {@code off} mean {@code false}
+     * ignoring the character case.
+     *
+     * @param key we look for
+     * @param def the default value in case the key was not present on the line
+     * @return the value for the key
+     * @throws IllegalArgumentException if the value is none of the above
+     */
+    public boolean getBoolean(String key, boolean def) {
+        final int index = indexOf(key);
+        if (index == -1) {
+            return def;
+        }
+        final var value = (tokens[index * SLOT + FLAGS] & ESCAPED_VALUE) != 0 ? value(index) : null;
+        final String s = value == null ? line : value;
+        final int start = value == null ? tokens[index * SLOT + VALUE_START] : 0;
+        final int length = value == null ? tokens[index * SLOT + VALUE_END] - start : value.length();
+        for (final var t : TRUE) {
+            if (t.length() == length && s.regionMatches(true, start, t, 0, length)) {
+                return true;
+            }
+        }
+        for (final var f : FALSE) {
+            if (f.length() == length && s.regionMatches(true, start, f, 0, length)) {
+                return false;
+            }
+        }
+        throw new IllegalArgumentException("The value of " + key +
+            " has to be one of true, yes, on, false, no or off");
+    }
+
+    private static final String[] TRUE = {"true", "yes", "on"};
+    private static final String[] FALSE = {"false", "no", "off"};
 }
@@ -0,0 +1,178 @@
+package javax0.repl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * A bounded character stream between two commands of a pipeline.
+ * <p>
+ * The characters written to the {@link #writer} are stored in a ring buffer until they are read from the
+ * {@link #reader}. When the buffer is full the writing thread waits until the reading thread reads, thus a command
+ * that produces a large output cannot get ahead of the next command by more than the size of the buffer. When the
+ * writer is closed the reader returns end of file after the remaining characters. When the reader is closed, because
+ * the next command has finished, the characters written after that are dropped.
+ * <p>
+ * Both the waiting reader and the waiting writer stop with an {@link InterruptedIOException} when their thread is
+ * interrupted.
+ */
+class Pipe {
+    static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final char[] buffer;
+    private int head;
+    private int size;
+    private boolean writerClosed;
+    private boolean readerClosed;
+
+    final Writer writer = new Writer() {
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            Pipe.this.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            Pipe.this.write(str, off, len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            closeWriter();
+        }
+    };
+
+    final Reader reader = new Reader() {
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            return Pipe.this.read(cbuf, off, len);
+        }
+
+        @Override
+        public boolean ready() {
+            return available() > 0;
+        }
+
+        @Override
+        public void close() {
+            closeReader();
+        }
+    };
+
+    Pipe() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of the characters that can be written without being read
+     */
+    Pipe(int capacity) {
+        buffer = new char[capacity];
+    }
+
+    private synchronized void write(char[] cbuf, int off, int len) throws IOException {
+        while (len > 0) {
+            final int n = awaitSpace(len);
+            if (n == 0) {
+                return;
+            }
+            final int tail = (head + size) % buffer.length;
+            final int first = Math.min(n, buffer.length - tail);
+            System.arraycopy(cbuf, off, buffer, tail, first);
+            System.arraycopy(cbuf, off + first, buffer, 0, n - first);
+            filled(n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    private synchronized void write(String str, int off, int len) throws IOException {
+        while (len > 0) {
+            final int n = awaitSpace(len);
+            if (n == 0) {
+                return;
+            }
+            final int tail = (head + size) % buffer.length;
+            final int first = Math.min(n, buffer.length - tail);
+            str.getChars(off, off + first, buffer, tail);
+            str.getChars(off + first, off + n, buffer, 0);
+            filled(n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Wait until there is space in the buffer.
+     *
+     * @param len the number of the characters to write
+     * @return the number of the characters that can be written now, zero if the reader was closed and the
+     * characters have to be dropped
+     */
+    private int awaitSpace(int len) throws IOException {
+        if (writerClosed) {
+            throw new IOException("The pipe is closed");
+        }
+        try {
+            while (size == buffer.length && !readerClosed) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        return readerClosed ? 0 : Math.min(len, buffer.length - size);
+    }
+
+    private void filled(int n) {
+        if (size == 0) {
+            notifyAll();
+        }
+        size += n;
+    }
+
+    private synchronized int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        try {
+            while (size == 0 && !writerClosed && !readerClosed) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        if (size == 0) {
+            return -1;
+        }
+        final int n = Math.min(len, size);
+        final int first = Math.min(n, buffer.length - head);
+        System.arraycopy(buffer, head, cbuf, off, first);
+        System.arraycopy(buffer, 0, cbuf, off + first, n - first);
+        if (size == buffer.length) {
+            notifyAll();
+        }
+        head = (head + n) % buffer.length;
+        size -= n;
+        return n;
+    }
+
+    private synchronized int available() {
+        return size;
+    }
+
+    private synchronized void closeWriter() {
+        writerClosed = true;
+        notifyAll();
+    }
+
+    private synchronized void closeReader() {
+        readerClosed = true;
+        size = 0;
+        notifyAll();
+    }
+}
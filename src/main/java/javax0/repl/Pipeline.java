@@ -0,0 +1,248 @@
+package javax0.repl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The execution of the commands of a line like {@code export format=csv | filter region=EU | count}.
+ * <p>
+ * Every command runs on its own daemon thread and all of them run at the same time. The output of a command is
+ * connected to the input of the next one, see {@link CommandEnvironment#input()}, by a {@link Pipe}, thus the output
+ * is not collected in memory and a command that writes faster than the next one reads has to wait. The output of the
+ * last command goes to the console. The commands cannot read the console, {@link LocalConsole#readLine(String)}
+ * returns {@code null} for them.
+ * <p>
+ * Every command has its own {@link Message} object. When all the commands have finished their messages are added to
+ * the messages of the line in the order of the commands and the state reporter is invoked once.
+ * <p>
+ * The line is recorded in the journal of the session, see {@link Repl#journal(String)}, as one entry, because the
+ * commands that read their input cannot be replayed alone.
+ * <p>
+ * The calling thread waits for the commands. When the user presses Ctrl-C or the calling thread is interrupted all
+ * the commands are cancelled the same way as a single command is cancelled by the {@link Worker}. The messages of the
+ * commands that do not stop are dropped and the output the last command prints after that is dropped.
+ */
+class Pipeline {
+    // the time to wait for the commands to stop after they were cancelled
+    private static final long GRACE_MILLIS = 1000;
+    private static final ExecutorService pool = Executors.newCachedThreadPool(r -> {
+        final var thread = new Thread(r, "repl-pipe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Repl repl;
+    private final ReplCommandEnvironment env;
+    private final List<Stage> stages = new ArrayList<>();
+
+    private static class Stage {
+        final ReplCommandEnvironment env;
+        final CommandDefinition comDef;
+        Future<?> future;
+        volatile boolean finished;
+
+        Stage(ReplCommandEnvironment env, CommandDefinition comDef) {
+            this.env = env;
+            this.comDef = comDef;
+        }
+    }
+
+    /**
+     * @param repl the repl that executes the commands
+     * @param env  the environment of the line. The output of the last command goes to its console and the messages
+     *             of the commands are added to its messages.
+     */
+    Pipeline(Repl repl, ReplCommandEnvironment env) {
+        this.repl = repl;
+        this.env = env;
+    }
+
+    /**
+     * Split the line at the {@code |} characters that are not between quotes and not escaped with a backslash. The
+     * quotes and the escapes are the same as for the parameters, see {@link ParameterParser}.
+     *
+     * @param line the line
+     * @return the commands of the line trimmed, or a list containing only the line if there is no {@code |} in it
+     */
+    static List<String> split(String line) {
+        int bar = ParameterParser.indexOfUnquoted(line, '|', 0);
+        if (bar == -1) {
+            return List.of(line);
+        }
+        final var commands = new ArrayList<String>();
+        int start = 0;
+        while (bar != -1) {
+            commands.add(line.substring(start, bar).trim());
+            start = bar + 1;
+            bar = ParameterParser.indexOfUnquoted(line, '|', start);
+        }
+        commands.add(line.substring(start).trim());
+        return commands;
+    }
+
+    /**
+     * Add the next command to the pipeline.
+     *
+     * @param stageEnv the environment the command was resolved in, the pipeline replaces its console, input and
+     *                 message
+     * @param comDef   the command
+     */
+    void add(ReplCommandEnvironment stageEnv, CommandDefinition comDef) {
+        stageEnv.piped = true;
+        stages.add(new Stage(stageEnv, comDef));
+    }
+
+    /**
+     * @return the line of the pipeline with the keywords of the commands as they are defined, the way it is recorded
+     * in the journal
+     */
+    String journalLine() {
+        final var sb = new StringBuilder();
+        for (final var stage : stages) {
+            if (sb.length() > 0) {
+                sb.append(" | ");
+            }
+            sb.append(stage.comDef.keyword);
+            if (!stage.env.line.isEmpty()) {
+                sb.append(' ').append(stage.env.line);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Execute the commands, wait for them to finish, record the line in the journal and invoke the state reporter.
+     */
+    void run() {
+        final int errorsBefore = env.message.errorCount();
+        execute();
+        repl.record(env, Journal.PIPELINE, env.message.errorCount() == errorsBefore, journalLine());
+        final var lastStage = stages.get(stages.size() - 1);
+        // the last command may still run, the state reporter gets an environment of its own
+        final var reportEnv = new ReplCommandEnvironment(repl);
+        reportEnv.keyword = lastStage.env.keyword;
+        reportEnv.line = lastStage.env.line;
+        reportEnv.parser = lastStage.env.parser;
+        reportEnv.matcher = lastStage.env.matcher;
+        reportEnv.matcherId = lastStage.env.matcherId;
+        reportEnv.cancelled = lastStage.env.cancelled;
+        reportEnv.console = env.console;
+        reportEnv.message = env.message;
+        try {
+            repl.report(reportEnv, lastStage.comDef);
+        } catch (Exception e) {
+            env.message.error("" + e);
+        }
+    }
+
+    /**
+     * Execute the commands and wait for them to finish. The messages of the commands are added to the messages of
+     * the line. This is all that is done when the pipeline is replayed from the journal.
+     */
+    void execute() {
+        final var done = new CountDownLatch(stages.size());
+        // counted down when all the commands have finished or when the user presses Ctrl-C
+        final var stopped = new CountDownLatch(1);
+        final var last = stages.size() - 1;
+        final var console = new Worker.DetachableConsole(new Jobs.JobConsole(env.console.writer()));
+        BufferedReader input = null;
+        for (int i = 0; i <= last; i++) {
+            final var stage = stages.get(i);
+            final var upstream = i == 0 ? null : stages.get(i - 1);
+            stage.env.message = new Message();
+            stage.env.input = input;
+            final var isLast = i == last;
+            final PrintWriter output;
+            if (isLast) {
+                output = console.writer();
+            } else {
+                final var pipe = new Pipe();
+                output = new PrintWriter(pipe.writer);
+                input = new BufferedReader(pipe.reader);
+            }
+            stage.env.console = isLast ? console : new Jobs.JobConsole(output);
+            stage.future = pool.submit(() -> {
+                try {
+                    repl.invoke(stage.env, stage.comDef);
+                } catch (Exception e) {
+                    stage.env.message.error("" + e);
+                } finally {
+                    if (isLast) {
+                        output.flush();
+                    } else {
+                        // the next command gets end of file
+                        output.close();
+                    }
+                    if (upstream != null) {
+                        // the previous command does not need to produce more output if this one does not read it
+                        upstream.env.cancelled = true;
+                        close(stage.env.input);
+                    }
+                    stage.finished = true;
+                    done.countDown();
+                    if (done.getCount() == 0) {
+                        stopped.countDown();
+                    }
+                }
+            });
+        }
+        if (env.interruptible) {
+            env.console.onInterrupt(stopped::countDown);
+        }
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (env.interruptible) {
+                env.console.onInterrupt(null);
+            }
+        }
+        if (done.getCount() > 0 && !cancel(done)) {
+            console.detach();
+        }
+        for (final var stage : stages) {
+            // the commands that did not stop may still write their messages
+            if (stage.finished) {
+                env.message.addAll(stage.env.message);
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if all the commands stopped in the grace period
+     */
+    private boolean cancel(CountDownLatch done) {
+        for (final var stage : stages) {
+            stage.env.cancelled = true;
+            stage.future.cancel(true);
+        }
+        env.message.error("The pipeline was cancelled");
+        try {
+            if (done.await(GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        env.message.warning("The commands of the pipeline did not stop, their output and messages are dropped " +
+            "from now on");
+        return false;
+    }
+
+    private static void close(BufferedReader reader) {
+        try {
+            reader.close();
+        } catch (IOException ignored) {
+            // closing the pipe does not throw
+        }
+    }
+}
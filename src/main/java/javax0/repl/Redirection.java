@@ -0,0 +1,70 @@
+package javax0.repl;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+
+/**
+ * The redirection of the output of a line to a file, like {@code export > data.csv} or {@code export >> data.csv}.
+ * <p>
+ * The redirection is at the end of the line, the file name is everything after the first {@code >} that is not
+ * between quotes and not escaped. When the line is a pipeline the output of the last command is redirected. Only the
+ * output is redirected, the messages are printed to the console.
+ */
+class Redirection {
+    // the line without the redirection
+    final String line;
+    final String file;
+    final boolean append;
+    // the reason the redirection cannot be executed or null
+    final String error;
+
+    private Redirection(String line, String file, boolean append, String error) {
+        this.line = line;
+        this.file = file;
+        this.append = append;
+        this.error = error;
+    }
+
+    /**
+     * @param line the line
+     * @return the redirection of the line or {@code null} if the line does not redirect its output
+     */
+    static Redirection of(String line) {
+        final int gt = ParameterParser.indexOfUnquoted(line, '>', 0);
+        if (gt == -1) {
+            return null;
+        }
+        final var append = gt + 1 < line.length() && line.charAt(gt + 1) == '>';
+        final var file = line.substring(append ? gt + 2 : gt + 1).trim();
+        final String error;
+        if (file.isEmpty()) {
+            error = "There is no file name after '>'";
+        } else if (ParameterParser.indexOfUnquoted(file, '>', 0) != -1) {
+            error = "The output can be redirected only once";
+        } else if (ParameterParser.indexOfUnquoted(file, '|', 0) != -1) {
+            error = "The output can be redirected only at the end of the line";
+        } else {
+            error = null;
+        }
+        return new Redirection(line.substring(0, gt).trim(), unquote(file), append, error);
+    }
+
+    private static String unquote(String file) {
+        if (file.length() > 1 && (file.charAt(0) == '"' || file.charAt(0) == '\'')
+            && file.charAt(file.length() - 1) == file.charAt(0)) {
+            return file.substring(1, file.length() - 1);
+        }
+        return file;
+    }
+
+    /**
+     * Open the file.
+     *
+     * @return the writer to the file
+     * @throws IOException if the file cannot be opened
+     */
+    PrintWriter open() throws IOException {
+        return new PrintWriter(new ChannelWriter(Path.of(file), append));
+    }
+}
@@ -3,22 +3,27 @@ package javax0.repl;
 import javax0.repl.CommandDefinitionBuilder.CommandDefinitionBuilderReady;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import static javax0.repl.CommandDefinitionBuilder.start;
 
 public class Repl implements Runnable {
-    private static final boolean isWindows = System.getProperty("os.name").toLowerCase().startsWith("windows");
-    private final Map<String, String> aliases = new HashMap<>();
+    // aliases can be defined while other threads evaluate lines
+    private final Map<String, String> aliases = new ConcurrentHashMap<>();
     private final AtomicBoolean shouldExit = new AtomicBoolean(false);
-    private final List<CommandDefinition> commandDefinitions = new ArrayList<>();
+    private final List<CommandDefinition> commandDefinitions;
+    private final Set<CommandDefinition> builtIns;
+    private CommandIndex commandIndex = CommandIndex.EMPTY;
     private String[] args;
-    private Message message = new Message();
+    private final Message message = new Message();
     private String appTitle;
     private String startupFile;
     private String prompt = "$ ";
@@ -26,63 +31,197 @@ public class Repl implements Runnable {
     private Consumer<CommandEnvironment> stateReporter;
     private Function<CommandEnvironment, Boolean> allowExit;
     private LocalConsole console;
+    private ReplCompleter completer;
+    private int batchFlush = -1;
+    private boolean parallel = false;
+    private Duration shellTimeout;
+    private boolean paging = false;
+    private boolean shellAllowed = true;
+    private boolean filesAllowed = true;
+    private final Jobs jobs = new Jobs();
+    private String historyFile;
+    private int historySize = 10_000;
+    private HistoryStore history;
+    private String journalFile;
+    private String replayFile;
+    private Journal journal;
+    private ScriptCache scriptCache;
+    private final EnvironmentPool environments = new EnvironmentPool(this);
 
     /**
      * Create a new object that already has the built-in commands configured.
      */
     public Repl() {
+        commandDefinitions = new ArrayList<>();
+        // the built-in commands use the Repl of the environment, which may be a session of a server. Most of them
+        // start with '*', so they do not make the abbreviations of the commands of the application ambiguous.
         command(start().kw("alias")
             .usage("alias myalias command")
             .help("You can freely define aliases for any command.\n" +
                 "You cannot define alias to an alias.")
-            .executor(this::aliasCommand)
+            .executor(env -> env.repl().aliasCommand(env))
         ).command(start().kw("*exit") // it starts with '*', user cannot abbreviate
             .parameter("confirm")
             .usage("exit")
             .help("Use the command 'exit' without parameters to exit from the REPL application")
-            .executor(this::exitCommand)
+            .executor(env -> env.repl().exitCommand(env))
         ).command(start().kw("help")
             .parameters(Set.of())
             .usage("help")
             .help("")
-            .executor(this::helpCommand)
+            .executor(env -> env.repl().helpCommand(env))
+        ).command(start().kw("*stats")
+            .parameters(Set.of())
+            .usage("stats")
+            .help("Print the number of invocations, errors and the latency percentiles of the commands\n" +
+                "executed since the last 'stats' command and reset the numbers.")
+            .executor(env -> env.repl().statsCommand(env))
+        ).command(start().kw("*jobs")
+            .parameters(Set.of())
+            .usage("jobs")
+            .help("List the commands started in the background with a trailing '&'.")
+            .executor(env -> env.repl().jobsCommand(env))
+        ).command(start().kw("*wait")
+            .parameters(Set.of())
+            .usage("wait [job]")
+            .help("Wait for the background job to finish and print its output and messages.\n" +
+                "Without a job number wait for all the jobs.")
+            .executor(env -> env.repl().waitCommand(env))
+        ).command(start().kw("*kill")
+            .parameters(Set.of())
+            .usage("kill job")
+            .help("Stop the background job interrupting the thread that executes it.")
+            .executor(env -> env.repl().killCommand(env))
+        ).command(start().kw("*history")
+            .parameters(Set.of("search", "limit"))
+            .usage("history [search=text] [limit=n]")
+            .help("List the last lines typed in. With 'search' list the lines that contain the text,\n" +
+                "the most recent first. At most 'limit' lines are listed, 20 by default.")
+            .executor(env -> env.repl().historyCommand(env))
+        ).command(start().kw("*bench")
+            .regex("bench", "(\\d{1,9})(?:/(\\d{1,9}))?\\s+(.+)")
+            .usage("bench N[/W] command line")
+            .help("Execute the command line N times and print the min, mean, median, 99th percentile and max\n" +
+                "latency, the number of executions per second and the bytes allocated per execution.\n" +
+                "The line is parsed only once and the output of the command is discarded. The first W\n" +
+                "executions are not measured, they warm up the code. W is N/10 by default.")
+            .executor(env -> env.repl().benchCommand(env))
         );
+        builtIns = Set.copyOf(commandDefinitions);
     }
 
-    private static Process getOsProcessObject(String s) throws IOException {
-        final Process process;
-        if (isWindows) {
-            process = Runtime.getRuntime()
-                .exec(String.format("cmd.exe /c %s", s));
-        } else {
-            process = Runtime.getRuntime()
-                .exec(String.format("sh -c %s", s));
-        }
-        return process;
+    /**
+     * Create a new session object for a {@link ReplServer}. The session uses the commands of the template object, but
+     * it has its own list of the commands, console, aliases, messages and exit state.
+     *
+     * @param template the Repl object that was configured by the application
+     * @param console  the console of the session
+     */
+    private Repl(Repl template, LocalConsole console) {
+        commandDefinitions = new ArrayList<>(template.commandDefinitions);
+        builtIns = template.builtIns;
+        commandIndex = template.commandIndex;
+        aliases.putAll(template.aliases);
+        appTitle = template.appTitle;
+        startupFile = template.startupFile;
+        prompt = template.prompt;
+        debugMode = template.debugMode;
+        stateReporter = template.stateReporter;
+        allowExit = template.allowExit;
+        batchFlush = template.batchFlush;
+        parallel = template.parallel;
+        shellTimeout = template.shellTimeout;
+        paging = template.paging;
+        shellAllowed = template.shellAllowed;
+        filesAllowed = template.filesAllowed;
+        historySize = template.historySize;
+        scriptCache = template.scriptCache;
+        this.console = console;
+    }
+
+    /**
+     * Create a new session that uses the commands of this object.
+     *
+     * @param console the console of the session
+     * @return the new session object, which can be started calling {@link #run()}
+     */
+    Repl session(LocalConsole console) {
+        return new Repl(this, console);
+    }
+
+    /**
+     * Allow or deny the shell commands starting with {@code !} and the execution of files with {@code .} typed by
+     * the user. Denying the files also denies redirecting the output of the commands into a file with {@code >}. The
+     * startup file is executed anyway.
+     *
+     * @param shell allow the shell commands
+     * @param files allow the execution of files and the redirection of the output
+     */
+    void allow(boolean shell, boolean files) {
+        shellAllowed = shell;
+        filesAllowed = files;
+    }
+
+    /**
+     * Define the console the application uses instead of the terminal. This can be used when the application is
+     * embedded, tested or the input and output comes from a network connection or from a file.
+     *
+     * @param console the console to be used
+     * @return this
+     */
+    public Repl console(LocalConsole console) {
+        this.console = console;
+        return this;
     }
 
     private void shell(String s) {
+        final var w = console.writer();
+        if (s.startsWith("cd ")) {
+            w.print("[ERROR] you can not change the working directory\n");
+            return;
+        }
         try {
-            if (s.startsWith("cd ")) {
-                console.writer().print("[ERROR] you can not change the working directory\n");
-                return;
-            }
-            final Process process = getOsProcessObject(s);
-            final var sb = new StringBuilder();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line).append("\n");
+            final var shell = new Shell(s, w);
+            console.onInterrupt(shell::cancel);
+            w.print("[SHELL OUTPUT]\n");
+            w.flush();
+            shell.pump();
+            final var exitCode = shell.waitFor(shellTimeout);
+            synchronized (w) {
+                if (shell.cancelled()) {
+                    w.print("[END SHELL OUTPUT] cancelled\n");
+                } else if (shell.timedOut()) {
+                    w.print("[END SHELL OUTPUT] killed after " + shellTimeout.toMillis() + "ms\n");
+                } else {
+                    w.print("[END SHELL OUTPUT] exit code " + exitCode + "\n");
+                }
             }
-            console.writer().print("[SHELL OUTPUT]\n" + sb.toString() + "[END SHELL OUTPUT]\n");
         } catch (IOException e) {
             if (debugMode) {
                 e.printStackTrace();
             }
-            console.writer().print("[EXCEPTION] " + e + "\n");
+            w.print("[EXCEPTION] " + e + "\n");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            w.print("[END SHELL OUTPUT] interrupted\n");
+        } finally {
+            console.onInterrupt(null);
         }
     }
 
+    /**
+     * Define the maximum time a shell command started with {@code !} can run. When the time is up the process is
+     * killed. By default there is no limit. The user can also stop the shell command pressing Ctrl-C if the console
+     * supports it.
+     *
+     * @param timeout the maximum time or {@code null} for no limit
+     * @return this
+     */
+    public Repl shellTimeout(Duration timeout) {
+        this.shellTimeout = timeout;
+        return this;
+    }
+
     /**
      * Switch the Repl into debug mode. In this mode the exceptions are printed to the screen including the stack trace.
      * In non-debug mode only a short information is printed about exceptions that happen during command execution but
@@ -105,15 +244,50 @@ public class Repl implements Runnable {
      * @return this
      */
     public Repl command(CommandDefinitionBuilderReady builder) {
-        final var def = builder.build();
-        for (final var cd : commandDefinitions) {
-            if (cd.keyword.toLowerCase().equals(def.keyword.toLowerCase())) {
-                commandDefinitions.remove(cd);
-                break;
+        register(builder.build());
+        return this;
+    }
+
+    /**
+     * Register the commands of the provider. Only the keywords, usage and help texts of the commands are registered,
+     * the commands are defined by the provider when they are first executed.
+     *
+     * @param provider the provider of the commands
+     * @return this
+     */
+    public Repl provider(CommandProvider provider) {
+        for (final var declaration : provider.declarations()) {
+            register(new CommandDefinition(declaration, provider));
+        }
+        return this;
+    }
+
+    /**
+     * Register the commands of all the {@link CommandProvider} implementations that the {@link ServiceLoader} finds
+     * on the class path or on the module path.
+     *
+     * @return this
+     */
+    public Repl providers() {
+        for (final var provider : ServiceLoader.load(CommandProvider.class)) {
+            provider(provider);
+        }
+        return this;
+    }
+
+    private void register(CommandDefinition def) {
+        // a command replaces the command that has the same keyword with or without the leading '*'
+        final var keyword = def.keyword.startsWith("*") ? def.keyword.substring(1) : def.keyword;
+        for (final var old : new CommandDefinition[]{commandIndex.get(keyword), commandIndex.get("*" + keyword)}) {
+            if (old != null) {
+                commandDefinitions.remove(old);
             }
         }
         commandDefinitions.add(def);
-        return this;
+        commandIndex = commandIndex.with(def);
+        if (completer != null) {
+            completer.commandDefined(def);
+        }
     }
 
     /**
@@ -129,30 +303,349 @@ public class Repl implements Runnable {
     }
 
     /**
-     * Fetch the messages that were accumulated since the message was fetched last time.
+     * @return the console given calling {@link #console(LocalConsole)} or the terminal console, which is created
+     * only once, when it is first needed
+     */
+    private LocalConsole getConsole() {
+        if (console == null) {
+            final var terminal = new JLineConsole(completer(), history.recent(RECENT_HISTORY));
+            if (paging && terminal.height() > 1) {
+                console = new PagingConsole(terminal, terminal.height());
+            } else {
+                console = terminal;
+            }
+        }
+        return console;
+    }
+
+    /**
+     * @return the completer of the terminal console, which is created only once, when it is first needed. The
+     * commands and the aliases defined later are added to it.
+     */
+    ReplCompleter completer() {
+        if (completer == null) {
+            completer = new ReplCompleter(commandDefinitions, aliases.keySet(), this::completionTarget);
+        }
+        return completer;
+    }
+
+    /**
+     * Page the output of the commands when the application runs in a terminal. The output that does not fit on the
+     * screen is held back and it is shown page by page when the command has finished. The held back output is kept
+     * in a buffer of fixed size and in a temporary file, so a command can print any amount of output without using
+     * more memory. The paging is not used for the consoles given calling {@link #console(LocalConsole)}.
      *
-     * @return the string of the messages
+     * @return this
      */
-    private String fetchMessage() {
-        final var msg = message.message();
-        message = new Message();
-        return msg;
+    public Repl pager() {
+        paging = true;
+        return this;
     }
 
-    private LocalConsole getConsole() {
-        return new JLineConsole(commandDefinitions, aliases.keySet());
+    /**
+     * Keep the history of the lines the user types in the file, so the history is available the next time the
+     * application starts. The file is created if it does not exist. The history is loaded when the application
+     * starts to run. A line typed again is moved to the end of the history. When there are more lines in the history
+     * than the maximum size, see {@link #historySize(int)}, then the oldest lines are dropped.
+     * <p>
+     * The terminal gets only the recent lines to browse with the arrow keys and to search with Ctrl-R. The built-in
+     * command {@code history search=text} searches all the lines using an index.
+     *
+     * @param historyFile the name of the history file
+     * @return this
+     */
+    public Repl history(String historyFile) {
+        this.historyFile = historyFile;
+        return this;
     }
 
-    private void exitCommand(CommandEnvironment env) {
-        if (allowExit != null && !allowExit.apply(env)) {
-            if (env.parser().get("confirm", Set.of("yes")).isPresent()) {
-                shouldExit.set(true);
-            } else {
-                env.message().warning("There is unsaved state in the application. Use 'exit confirm=yes'");
+    /**
+     * Define the maximum number of lines kept in the history. The default is 10000.
+     *
+     * @param historySize the maximum number of the lines
+     * @return this
+     */
+    public Repl historySize(int historySize) {
+        this.historySize = historySize;
+        return this;
+    }
+
+    private static final int RECENT_HISTORY = 1000;
+
+    private void openHistory() {
+        if (history != null) {
+            return;
+        }
+        if (historyFile != null) {
+            try {
+                history = new HistoryStore(Path.of(historyFile), historySize);
+                return;
+            } catch (IOException e) {
+                message.error("The history cannot be loaded from '" + historyFile + "', " + e.getMessage());
             }
+        }
+        history = new HistoryStore(historySize);
+    }
+
+    private void addHistory(String line) {
+        try {
+            history.add(line);
+        } catch (IOException e) {
+            message.error("The history file cannot be written, " + e.getMessage());
+        }
+    }
+
+    /**
+     * Record the commands the user executes in a journal file. Every command is appended to the file with the time,
+     * the keyword of the command and the outcome. The journal can be executed again calling {@link #replay(String)}
+     * when the application starts next time to get back the state the session had. The built-in commands, except
+     * {@code alias}, are not recorded. The commands of a pipeline are recorded together in one entry and they are
+     * replayed as a pipeline. The journal is used only when the application runs interactively.
+     *
+     * @param journalFile the name of the journal file, new entries are appended to the end of the file
+     * @return this
+     */
+    public Repl journal(String journalFile) {
+        this.journalFile = journalFile;
+        return this;
+    }
+
+    /**
+     * Execute the commands of a journal written by an earlier session, see {@link #journal(String)}, when the
+     * application starts after the startup file. The commands are executed as fast as possible: there is no prompt,
+     * the output of the commands is dropped, only the messages of the failed commands are printed and the state
+     * reporter is not called. The commands that failed when they were recorded are skipped. At the end a summary is
+     * printed with the number of the commands and the time it took.
+     * <p>
+     * The same file can be given to {@link #journal(String)}, the replayed commands are not recorded again.
+     *
+     * @param replayFile the name of the journal file
+     * @return this
+     */
+    public Repl replay(String replayFile) {
+        this.replayFile = replayFile;
+        return this;
+    }
+
+    private void replayJournal(LocalConsole console) {
+        if (replayFile == null) {
+            return;
+        }
+        final var out = new PrintWriter(new BufferedWriter(console.writer(), BATCH_BUFFER_SIZE), false);
+        final var discard = new PrintWriter(Writer.nullWriter());
+        final var env = new ReplCommandEnvironment(this);
+        env.message = new Message();
+        // the replayed commands cannot ask the user
+        env.console = new Jobs.JobConsole(discard);
+        final long[] counts = new long[3];
+        final long start = System.nanoTime();
+        try {
+            Journal.read(Path.of(replayFile), entry -> {
+                if (!entry.ok) {
+                    counts[2]++;
+                    return;
+                }
+                counts[0]++;
+                if (entry.keyword.equals(Journal.PIPELINE)) {
+                    final var pipeline = replayPipeline(env, entry.line);
+                    if (pipeline != null) {
+                        pipeline.execute();
+                    }
+                    if (env.message.errorCount() > 0) {
+                        counts[1]++;
+                        out.print(entry.line + "\n");
+                        env.message.writeTo(out);
+                    } else {
+                        env.message.writeTo(discard);
+                    }
+                    return;
+                }
+                final var comDef = commandIndex.get(entry.keyword);
+                if (comDef == null) {
+                    env.message.error("command '" + entry.keyword + "' is not defined");
+                } else {
+                    env.keyword = entry.keyword.startsWith("*") ? entry.keyword.substring(1) : entry.keyword;
+                    env.line = entry.line;
+                    env.matcher = null;
+                    env.matcherId = null;
+                    env.cancelled = false;
+                    try {
+                        invoke(env, comDef.definition());
+                    } catch (Exception e) {
+                        env.message.error("" + e);
+                    }
+                }
+                if (env.message.errorCount() > 0) {
+                    counts[1]++;
+                    out.print(env.keyword + " " + entry.line + "\n");
+                    env.message.writeTo(out);
+                } else {
+                    env.message.writeTo(discard);
+                }
+            });
+        } catch (IOException e) {
+            message.error("The journal cannot be read from '" + replayFile + "', " + e.getMessage());
+        }
+        final long nanos = Math.max(System.nanoTime() - start, 1);
+        message.info(String.format("Replayed %d lines from '%s' in %d ms, %d lines with error, %d failed lines skipped",
+            counts[0], replayFile, nanos / 1_000_000, counts[1], counts[2]));
+        message.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * Build the pipeline of a journal entry. The commands of the entry have their keywords as they are defined, see
+     * {@link Pipeline#journalLine()}, thus they are not resolved again.
+     *
+     * @return the pipeline or {@code null} if some of the commands is not defined, in which case the error is already
+     * in the messages of the environment
+     */
+    private Pipeline replayPipeline(ReplCommandEnvironment env, String line) {
+        final var pipeline = new Pipeline(this, env);
+        for (final var command : Pipeline.split(line)) {
+            final var stageEnv = new ReplCommandEnvironment(this);
+            keywordAndLine(stageEnv, command);
+            final var comDef = commandIndex.get(stageEnv.keyword);
+            if (comDef == null) {
+                env.message.error("command '" + stageEnv.keyword + "' is not defined");
+                return null;
+            }
+            if (stageEnv.keyword.startsWith("*")) {
+                stageEnv.keyword = stageEnv.keyword.substring(1);
+            }
+            pipeline.add(stageEnv, comDef.definition());
+        }
+        return pipeline;
+    }
+
+    private void openJournal() {
+        if (journalFile == null || journal != null) {
+            return;
+        }
+        try {
+            journal = new Journal(Path.of(journalFile));
+        } catch (IOException e) {
+            message.error("The journal cannot be opened '" + journalFile + "', " + e.getMessage());
+        }
+    }
+
+    private void historyCommand(CommandEnvironment env) {
+        final var w = env.console().writer();
+        final var limit = env.parser().getInt("limit", 20);
+        final var search = env.parser().get("search");
+        if (search.isPresent()) {
+            history.search(search.get(), limit).forEach(line -> w.print(line + "\n"));
         } else {
+            history.recent(limit).forEach(line -> w.print(line + "\n"));
+        }
+        w.flush();
+    }
+
+    private void benchCommand(CommandEnvironment env) {
+        final var calls = Integer.parseInt(env.matcher().group(1));
+        final var warmup = env.matcher().group(2) == null ? calls / 10 : Integer.parseInt(env.matcher().group(2));
+        if (calls == 0) {
+            env.message().error("The number of the executions has to be positive");
+            return;
+        }
+        final var target = new ReplCommandEnvironment(this);
+        target.message = new Message();
+        final var comDef = resolve(target, env.matcher().group(3));
+        if (comDef != null && builtIns.contains(comDef)) {
+            target.message.error("The built-in command '" + comDef.keyword.replace("*", "") + "' cannot be measured");
+        } else if (comDef != null) {
+            target.parser = parseLine(target, comDef);
+            if (!matchRegexes(target, comDef.regexes)) {
+                target.message.error("None of the syntax patterns could match the line. See the help of the command.");
+            }
+        }
+        if (comDef == null || target.message.errorCount() > 0) {
+            target.message.entries().stream().filter(entry -> entry.level() == Message.Level.ERROR)
+                .forEach(entry -> env.message().error(entry.text()));
+            return;
+        }
+        target.message.command(comDef.keyword.startsWith("*") ? comDef.keyword.substring(1) : comDef.keyword);
+        new Bench(env, target, comDef).run(calls, warmup);
+    }
+
+    private void exitCommand(CommandEnvironment env) {
+        final var allowed = allowExit == null || allowExit.apply(env);
+        final var running = jobs.running();
+        if ((allowed && running == 0) || env.parser().get("confirm", Set.of("yes")).isPresent()) {
+            jobs.killAll();
             shouldExit.set(true);
+            return;
+        }
+        if (!allowed) {
+            env.message().warning("There is unsaved state in the application. Use 'exit confirm=yes'");
+        }
+        if (running > 0) {
+            env.message().warning("There " + (running == 1 ? "is 1 job" : "are " + running + " jobs") +
+                " running in the background. Use 'exit confirm=yes' to kill them and exit");
+        }
+    }
+
+    /**
+     * The number of the commands started in the background with a trailing {@code &} that are still running. The
+     * function passed to {@link #allowExit(Function)} can use this method to decide if the application can exit.
+     *
+     * @return the number of the running background jobs
+     */
+    public int runningJobs() {
+        return jobs.running();
+    }
+
+    private void jobsCommand(CommandEnvironment env) {
+        jobs.list(env.console().writer());
+        env.console().writer().flush();
+    }
+
+    private void waitCommand(CommandEnvironment env) {
+        final var w = env.console().writer();
+        try {
+            if (env.parser().get(0).isPresent()) {
+                final var job = job(env);
+                if (job != null) {
+                    jobs.await(job, w);
+                }
+            } else {
+                for (final var job : jobs.all()) {
+                    jobs.await(job, w);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            env.message().warning("Waiting was interrupted, the jobs are still running");
+        }
+        w.flush();
+    }
+
+    private void killCommand(CommandEnvironment env) {
+        final var job = job(env);
+        if (job != null) {
+            if (jobs.kill(job)) {
+                env.message().info("[" + job.id + "] was killed");
+            } else {
+                env.message().warning("[" + job.id + "] has already finished");
+            }
+        }
+    }
+
+    /**
+     * @return the job given as the first parameter of the command or {@code null} if there is no such job, in which
+     * case the error is already in the messages
+     */
+    private Jobs.Job job(CommandEnvironment env) {
+        final var id = env.parser().get(0).orElse("");
+        Jobs.Job job = null;
+        try {
+            job = jobs.get(Integer.parseInt(id.startsWith("%") ? id.substring(1) : id));
+        } catch (NumberFormatException ignored) {
+        }
+        if (job == null) {
+            env.message().error("There is no job '" + id + "'");
         }
+        return job;
     }
 
     private void helpCommand(CommandEnvironment env) {
@@ -164,6 +657,7 @@ public class Repl implements Runnable {
                 return;
             }
             final var fakeEnv = new ReplCommandEnvironment(this);
+            fakeEnv.message = env.message();
             keywordAndLine(fakeEnv, command);
             final var cd = getCommand(fakeEnv);
             if (cd == null) {
@@ -181,8 +675,13 @@ public class Repl implements Runnable {
             commandDefinitions.forEach(
                 c -> w.print(c.usage + "\n")
             );
-            w.print("! cmd to execute shell commands\n");
-            w.print(". filename to execute the content of the file\n");
+            if (shellAllowed) {
+                w.print("! cmd to execute shell commands\n");
+            }
+            if (filesAllowed) {
+                w.print(". filename to execute the content of the file\n");
+            }
+            w.print("command & to execute the command in the background\n");
             if (!aliases.isEmpty()) {
                 w.print("Aliases:\n");
                 aliases.keySet().forEach(
@@ -193,6 +692,18 @@ public class Repl implements Runnable {
         w.flush();
     }
 
+    private void statsCommand(CommandEnvironment env) {
+        final var w = env.console().writer();
+        var printed = false;
+        for (final var cd : commandDefinitions) {
+            printed |= cd.stats().printAndReset(cd.keyword.startsWith("*") ? cd.keyword.substring(1) : cd.keyword, w);
+        }
+        if (!printed) {
+            w.print("No command was executed since the last 'stats'\n");
+        }
+        w.flush();
+    }
+
     /**
      * Define a new alias
      *
@@ -203,10 +714,15 @@ public class Repl implements Runnable {
     public Repl alias(String alias, String command) {
         if (command == null) {
             aliases.remove(alias);
+            if (completer != null && commandIndex.get(alias) == null && commandIndex.get("*" + alias) == null) {
+                completer.aliasRemoved(alias);
+            }
         } else {
             aliases.put(alias, command);
+            if (completer != null) {
+                completer.aliasDefined(alias);
+            }
         }
-        console = getConsole();
         return this;
     }
 
@@ -241,30 +757,136 @@ public class Repl implements Runnable {
 
     private void aliasCommand(CommandEnvironment env) {
         final var alias = env.parser().get(0).orElse(null);
+        if (alias == null) {
+            env.message().error("There is no alias name, use 'alias myalias command'");
+            return;
+        }
         final var command = env.parser().get(1).orElse(null);
         alias(alias, command);
         env.message().info(alias + " was set to alias " + command);
     }
 
+    /**
+     * Switch the execution of the files (the ones started with {@code .} and the one given on the command line) into
+     * batch mode. In batch mode the file is read through a large buffer, the output of the commands and the messages
+     * are collected in a large buffer and they are written to the console only after {@code flushLines} lines were
+     * executed. At the end of the file a summary is printed telling how many lines were executed in how much time
+     * and how many of them had errors.
+     *
+     * @param flushLines the number of lines after which the output is flushed. If it is zero or negative then the
+     *                   output is flushed only when the buffer is full and at the end of the file.
+     * @return this
+     */
+    public Repl batch(int flushLines) {
+        this.batchFlush = Math.max(flushLines, 0);
+        return this;
+    }
+
+    /**
+     * Let the files (the ones started with {@code .} and the one given on the command line) execute the consecutive
+     * lines that invoke thread safe commands in parallel. The commands can be declared thread safe calling
+     * {@code threadSafe()} when they are defined. The output and the messages of the commands are still printed in
+     * the order of the lines in the file.
+     *
+     * @return this
+     */
+    public Repl parallel() {
+        parallel = true;
+        return this;
+    }
+
+    private static final int BATCH_BUFFER_SIZE = 1 << 16;
+
     private void execFile(String fileName, LocalConsole console) {
-        message.info("Executing '" + fileName + "'");
-        try (final var reader = new BufferedReader(new FileReader(fileName))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().length() > 0) {
-                    try {
-                        execute(line);
-                    } catch (Exception e) {
-                        message.error("" + e);
-                    }
-                    console.writer().print(fetchMessage());
-                    console.writer().flush();
+        final var batch = batchFlush >= 0;
+        message.info("Executing '" + fileName + "'" + (batch ? " in batch mode" : ""));
+        final var out = batch ? new PrintWriter(new BufferedWriter(console.writer(), BATCH_BUFFER_SIZE), false)
+            : console.writer();
+        final var script = new Script(this, message, batch ? new BufferedConsole(console, out) : console, out,
+            batch ? batchFlush : 1, parallel);
+        message.writeTo(out);
+        final long start = System.nanoTime();
+        try {
+            if (scriptCache == null) {
+                try (final var reader = new BufferedReader(new FileReader(fileName), batch ? BATCH_BUFFER_SIZE : 8192)) {
+                    execLines(reader, script);
                 }
+            } else {
+                execCompiled(fileName, script);
             }
         } catch (Exception e) {
             message.error("" + e);
-            console.writer().print(fetchMessage());
+        } finally {
+            script.finish();
+        }
+        if (batch) {
+            final long nanos = Math.max(System.nanoTime() - start, 1);
+            message.info(String.format("Executed %d lines in %d ms, %.0f lines/sec, %d lines with error",
+                script.lines(), nanos / 1_000_000, script.lines() * 1e9 / nanos, script.errors()));
         }
+        message.writeTo(out);
+        out.flush();
+    }
+
+    private static void execLines(BufferedReader reader, Script script) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.isBlank()) {
+                script.execute(line);
+            }
+        }
+    }
+
+    /**
+     * Execute the compiled form of the script if it is in the cache, otherwise execute the script and save the
+     * compiled form.
+     */
+    private void execCompiled(String fileName, Script script) throws IOException {
+        final var content = Files.readAllBytes(Path.of(fileName));
+        final var compiledFile = scriptCache.file(content, fingerprint());
+        final var compiled = scriptCache.load(compiledFile);
+        if (compiled != null) {
+            for (final var line : compiled) {
+                script.execute(line);
+            }
+            return;
+        }
+        script.compile();
+        try (final var reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content)),
+            BATCH_BUFFER_SIZE)) {
+            execLines(reader, script);
+        }
+        script.finish();
+        scriptCache.save(compiledFile, script.compiled());
+    }
+
+    /**
+     * @return a string that changes when the resolution or the parsing of some line could change: when a command or
+     * an alias is defined or redefined
+     */
+    private String fingerprint() {
+        final var sb = new StringBuilder();
+        for (final var commandDefinition : commandDefinitions) {
+            commandDefinition.fingerprint(sb);
+        }
+        new TreeMap<>(aliases).forEach((alias, command) -> sb.append(alias).append("->").append(command).append('\n'));
+        return sb.toString();
+    }
+
+    /**
+     * Cache the compiled form of the executed files (the ones started with {@code .} and the one given on the
+     * command line) in the directory. When a file is executed the first time the command, the parameters and the
+     * matching regular expression of every line are saved. When the same file is executed again and neither the file
+     * nor the commands and the aliases have changed then the lines are executed without looking up the commands and
+     * parsing the parameters. The commands of a {@link CommandProvider} are not defined to check if the compiled
+     * form is up to date, the class and the {@link CommandProvider#version()} of the provider are checked instead.
+     *
+     * @param directory the directory of the compiled files, it is created if it does not exist
+     * @return this
+     */
+    public Repl scriptCache(String directory) {
+        this.scriptCache = new ScriptCache(Path.of(directory));
+        return this;
     }
 
     /**
@@ -300,13 +922,96 @@ public class Repl implements Runnable {
         return this;
     }
 
+    /**
+     * Execute a line without a console and return the result.
+     * <p>
+     * The line is resolved, parsed and executed the same way as a line typed in by the user, using the commands and
+     * the aliases defined for this object, and the execution is counted in the statistics of the command. The output
+     * of the command is collected into {@link Result#output()} and the command cannot read the console. The line is
+     * one command: the characters {@code |}, {@code >} and {@code &} are passed to the command as they are. The
+     * built-in commands cannot be executed this way and the state reporter is not invoked.
+     * <p>
+     * The method can be called from many threads at the same time, without calling {@link #run()}, after the commands
+     * were defined. The commands executed this way have to be thread safe. The environment objects given to the
+     * commands are pooled and reused, therefore a command must not keep a reference to its environment after it has
+     * returned.
+     *
+     * @param line the line to execute
+     * @return the result of the execution
+     */
+    public Result eval(String line) {
+        final var pooled = environments.take();
+        try {
+            return eval(pooled, line);
+        } finally {
+            environments.release(pooled);
+        }
+    }
+
+    private Result eval(EnvironmentPool.Pooled pooled, String line) {
+        final var env = pooled.env;
+        final var comDef = resolve(env, line);
+        if (comDef == null || builtIns.contains(comDef)) {
+            if (line.isBlank()) {
+                env.message.error("There is no command on the line");
+            } else if (comDef != null) {
+                env.message.error("The built-in command '" + comDef.keyword.replace("*", "") +
+                    "' cannot be evaluated");
+            }
+            return new Result(Result.Status.NOT_FOUND, null, null, "", env.message.entries());
+        }
+        Result.Status status;
+        try {
+            if (!invoke(env, comDef)) {
+                status = Result.Status.INVALID;
+            } else if (env.cancelled) {
+                status = Result.Status.CANCELLED;
+            } else {
+                status = env.message.errorCount() > 0 ? Result.Status.FAILED : Result.Status.OK;
+            }
+        } catch (RuntimeException e) {
+            if (env.parser == null) {
+                // the parameters could not be parsed
+                env.message.error(e.getMessage());
+                status = Result.Status.INVALID;
+            } else {
+                env.message.error("" + e);
+                status = Result.Status.FAILED;
+            }
+        }
+        return new Result(status, comDef.keyword.replace("*", ""), env.matcherId, pooled.output.toString(),
+            env.message.entries());
+    }
+
     /**
      * Run the application.
      */
     public void run() {
+        openHistory();
+        try {
+            interact();
+        } finally {
+            close(history);
+            history = null;
+            close(journal);
+            journal = null;
+        }
+    }
+
+    private static void close(AutoCloseable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (Exception ignored) {
+            // all the lines and entries were already written
+        }
+    }
+
+    private void interact() {
         console = getConsole();
         final var w = console.writer();
-        w.print(fetchMessage());
+        message.writeTo(w);
         if (args != null && args.length > 0) {
             execFile(args[0], console);
             return;
@@ -317,9 +1022,13 @@ public class Repl implements Runnable {
         w.print("\nCDW is " + new File(".").getAbsolutePath() + "\n");
         w.print("type 'help' for help\n");
         executeStartupFile(console);
-        w.print(fetchMessage());
+        replayJournal(console);
+        openJournal();
+        message.writeTo(w);
         w.flush();
         for (; ; ) {
+            jobs.notifyFinished(w);
+            w.flush();
             final var rawLine = console.readLine(prompt);
             if (rawLine == null) {
                 return;
@@ -328,18 +1037,33 @@ public class Repl implements Runnable {
             if (line.equalsIgnoreCase("")) {
                 continue;
             }
+            addHistory(line);
 
             if (line.trim().startsWith(".")) {
-                execFile(line.trim().substring(1).stripLeading(), console);
+                if (filesAllowed) {
+                    execFile(line.trim().substring(1).stripLeading(), console);
+                } else {
+                    message.error("Executing files is not allowed");
+                    message.writeTo(w);
+                }
                 continue;
             }
             if (line.startsWith("!")) {
-                shell(line.substring(1));
+                if (shellAllowed) {
+                    shell(line.substring(1));
+                } else {
+                    message.error("Executing shell commands is not allowed");
+                    message.writeTo(w);
+                }
                 w.flush();
                 continue;
             }
             try {
-                execute(line);
+                if (line.endsWith("&")) {
+                    background(line.substring(0, line.length() - 1).trim());
+                } else {
+                    execute(line);
+                }
             } catch (IllegalArgumentException e) {
                 message.error(e.getMessage());
             } catch (Exception e) {
@@ -348,7 +1072,7 @@ public class Repl implements Runnable {
                 }
                 w.print("[EXCEPTION] " + e);
             }
-            w.print(fetchMessage());
+            message.writeTo(w);
             w.flush();
             if (shouldExit.get()) {
                 return;
@@ -372,68 +1096,296 @@ public class Repl implements Runnable {
     private void execute(String line) {
         final var env = new ReplCommandEnvironment(this);
         env.message = message;
+        env.console = console;
+        env.interruptible = true;
+        execute(env, line);
+    }
+
+    private Pipeline preparePipeline(ReplCommandEnvironment env, List<String> commands) {
+        final var pipeline = new Pipeline(this, env);
+        for (final var command : commands) {
+            if (command.isEmpty()) {
+                env.message.error("There is an empty command in the pipeline");
+                return null;
+            }
+            final var stageEnv = new ReplCommandEnvironment(this);
+            stageEnv.message = env.message;
+            final var comDef = resolve(stageEnv, command);
+            if (comDef == null) {
+                return null;
+            }
+            if (builtIns.contains(comDef)) {
+                env.message.error("The built-in command '" + comDef.keyword.replace("*", "") +
+                    "' cannot be used in a pipeline");
+                return null;
+            }
+            pipeline.add(stageEnv, comDef);
+        }
+        return pipeline;
+    }
+
+    /**
+     * Start the command of the line in the background. The command is resolved on the calling thread, thus the
+     * unknown commands are reported immediately.
+     */
+    private void background(String line) {
+        final var env = new ReplCommandEnvironment(this);
+        env.message = message;
+        env.console = console;
+        final var redirection = Redirection.of(line);
+        if (redirection != null && redirection.error != null) {
+            message.error(redirection.error);
+            return;
+        }
+        final var command = redirection == null ? line : redirection.line;
+        final Runnable executor;
+        final var commands = Pipeline.split(command);
+        if (commands.size() > 1) {
+            final var pipeline = preparePipeline(env, commands);
+            if (pipeline == null) {
+                return;
+            }
+            executor = pipeline::run;
+        } else {
+            final var comDef = resolve(env, command);
+            if (comDef == null) {
+                return;
+            }
+            if (builtIns.contains(comDef)) {
+                message.error("The built-in command '" + comDef.keyword.replace("*", "") +
+                    "' cannot run in the background");
+                return;
+            }
+            executor = () -> {
+                invoke(env, comDef);
+                report(env, comDef);
+            };
+        }
+        final var job = jobs.start(line, env,
+            redirection == null ? executor : () -> redirect(env, redirection, executor));
+        message.info("[" + job.id + "] started " + line);
+    }
+
+    /**
+     * Execute the line using the environment. The line can be a pipeline, see {@link Pipeline}, and it can redirect
+     * its output to a file, see {@link Redirection}. The environment has to have the message and the console set.
+     * The other fields are overwritten, therefore the same environment object can be used to execute many lines.
+     */
+    void execute(ReplCommandEnvironment env, String line) {
+        final var redirection = Redirection.of(line);
+        if (redirection != null) {
+            redirect(env, redirection, () -> execute(env, redirection.line));
+            return;
+        }
+        final var commands = Pipeline.split(line);
+        if (commands.size() > 1) {
+            final var pipeline = preparePipeline(env, commands);
+            if (pipeline != null) {
+                pipeline.run();
+            }
+            return;
+        }
+        final var comDef = resolve(env, line);
+        if (comDef != null) {
+            invoke(env, comDef);
+            report(env, comDef);
+        }
+    }
+
+    /**
+     * Execute the line with the output written to the file of the redirection. The messages are collected in the
+     * environment as usual.
+     */
+    private void redirect(ReplCommandEnvironment env, Redirection redirection, Runnable executor) {
+        if (redirection.error != null) {
+            env.message.error(redirection.error);
+            return;
+        }
+        if (!filesAllowed) {
+            env.message.error("Writing files is not allowed");
+            return;
+        }
+        final PrintWriter w;
+        try {
+            w = redirection.open();
+        } catch (IOException | InvalidPathException e) {
+            env.message.error("The file '" + redirection.file + "' cannot be opened, " + e);
+            return;
+        }
+        final var console = env.console;
+        env.console = new BufferedConsole(console, w);
+        try {
+            executor.run();
+        } finally {
+            env.console = console;
+            w.close();
+            if (w.checkError()) {
+                env.message.error("The output could not be written to the file '" + redirection.file + "'");
+            }
+        }
+    }
+
+    /**
+     * Find the command the line invokes. The keyword and the rest of the line are stored in the environment.
+     *
+     * @return the command or {@code null} if the line is empty or there is no command for the keyword. In the latter
+     * case the error is already in the messages of the environment.
+     */
+    CommandDefinition resolve(ReplCommandEnvironment env, String line) {
+        env.matcher = null;
+        env.matcherId = null;
+        env.parser = null;
+        env.cancelled = false;
         final String trimmedLine = line.trim();
         if (trimmedLine.length() == 0) {
-            return;
+            return null;
         }
         keywordAndLine(env, trimmedLine);
         seekAlias(env);
         final var comDef = getCommand(env);
+        return comDef == null ? null : comDef.definition();
+    }
+
+    /**
+     * Find the command of a line of a compiled script. The keyword and the rest of the line are stored in the
+     * environment.
+     *
+     * @return the command or {@code null} if there is no command with the keyword, in which case the error is already
+     * in the messages of the environment
+     */
+    CommandDefinition resolve(ReplCommandEnvironment env, ScriptCache.Line line) {
+        env.matcher = null;
+        env.matcherId = null;
+        env.parser = null;
+        env.cancelled = false;
+        env.keyword = line.keyword;
+        env.line = line.rest;
+        final var comDef = commandIndex.get(line.command);
         if (comDef == null) {
+            env.message.error("command '" + line.keyword + "' is not defined");
+            return null;
+        }
+        return comDef.definition();
+    }
+
+    /**
+     * Parse the line and invoke the command if the line matches the syntax of the command. The time of the phases
+     * are recorded in the statistics of the command.
+     *
+     * @return {@code true} if the command was executed, {@code false} if the line did not match the syntax of the
+     * command
+     */
+    boolean invoke(ReplCommandEnvironment env, CommandDefinition comDef) {
+        return invoke(env, comDef, null);
+    }
+
+    /**
+     * Invoke the command. If the line is compiled then it is not parsed, and only the regular expression that
+     * matched it when it was compiled is matched.
+     *
+     * @param compiled the compiled line or {@code null}
+     * @return {@code true} if the command was executed, {@code false} if the line did not match the syntax of the
+     * command
+     */
+    boolean invoke(ReplCommandEnvironment env, CommandDefinition comDef, ScriptCache.Line compiled) {
+        final var stats = comDef.stats;
+        final int errorsBefore = env.message.errorCount();
+        final var command = env.message.command(comDef.keyword.startsWith("*") ? comDef.keyword.substring(1)
+            : comDef.keyword);
+        var success = false;
+        try {
+            final long start = System.nanoTime();
+            env.parser = compiled == null ? parseLine(env, comDef) : compiled.parser;
+            final long parsed = System.nanoTime();
+            stats.record(CommandStats.Phase.PARSE, parsed - start);
+            final var matches = compiled == null ? matchRegexes(env, comDef.regexes)
+                : compiled.matcher == -1 || comDef.regexes.match(env, compiled.matcher);
+            final long matched = System.nanoTime();
+            stats.record(CommandStats.Phase.MATCH, matched - parsed);
+            if (matches) {
+                Worker.execute(env, comDef);
+                stats.record(CommandStats.Phase.EXECUTE, System.nanoTime() - matched);
+                success = env.message.errorCount() == errorsBefore;
+            } else {
+                env.message.error("None of the syntax patterns could match the line. See the help of the command.");
+            }
+            return matches;
+        } finally {
+            env.message.command(command);
+            stats.invoked(success);
+            record(env, comDef, success);
+        }
+    }
+
+    /**
+     * Append the command to the journal, if there is a journal. The built-in commands, except {@code alias}, are not
+     * recorded, because they do not change the state of the session.
+     */
+    private void record(ReplCommandEnvironment env, CommandDefinition comDef, boolean success) {
+        // the commands of a pipeline are recorded together by the pipeline
+        if (env.piped || (builtIns.contains(comDef) && !comDef.keyword.equals("alias"))) {
             return;
         }
-        env.console = console;
-        env.parser = parseLine(env, comDef.parameters);
-        if (matchRegexes(env, comDef.regexes)) {
-            comDef.executor.accept(env);
-        } else {
-            message.error("None of the syntax patterns could match the line. See the help of the command.");
+        record(env, comDef.keyword, success, env.line);
+    }
+
+    /**
+     * Append an entry to the journal, if there is a journal.
+     *
+     * @param keyword the keyword of the command as it is defined or {@link Journal#PIPELINE}
+     */
+    void record(ReplCommandEnvironment env, String keyword, boolean success, String line) {
+        if (journal == null) {
+            return;
         }
-        if (stateReporter != null) {
-            stateReporter.accept(env);
+        try {
+            journal.record(keyword, success, line);
+        } catch (IOException e) {
+            env.message.warning("The journal cannot be written, " + e.getMessage());
         }
     }
 
-    private boolean kwMatch(CommandDefinition comDef, String kw) {
-        if (comDef.keyword.startsWith("*")) {
-            return comDef.keyword.substring(1).toLowerCase().equals(kw);
+    /**
+     * Invoke the state reporter, if there is any.
+     */
+    void report(ReplCommandEnvironment env, CommandDefinition comDef) {
+        if (stateReporter != null) {
+            final long start = System.nanoTime();
+            stateReporter.accept(env);
+            comDef.stats.record(CommandStats.Phase.REPORT, System.nanoTime() - start);
         }
-        return comDef.keyword.toLowerCase().startsWith(kw);
     }
 
     private CommandDefinition getCommand(ReplCommandEnvironment env) {
-        final var kw = env.keyword().toLowerCase();
-        final var commands = commandDefinitions.stream()
-            .filter(command -> kwMatch(command, kw))
-            .collect(Collectors.toList());
-        if (commands.size() > 1) {
-            message.error("command '" + env.keyword() + "' is ambiguous");
+        final var command = commandIndex.find(env.keyword());
+        if (command == CommandIndex.AMBIGUOUS) {
+            env.message.error("command '" + env.keyword() + "' is ambiguous");
             return null;
         }
-        if (commands.size() == 0) {
-            message.error("command '" + env.keyword() + "' is not defined");
+        if (command == null) {
+            env.message.error("command '" + env.keyword() + "' is not defined");
             return null;
         }
-        return commands.get(0);
+        return command;
+    }
+
+    /**
+     * Find the command the first word of a line refers to for the completion. It resolves the aliases and the
+     * abbreviations the same way as the execution of the line, but it does not report errors.
+     *
+     * @return the command or {@code null} if there is no command or the keyword is ambiguous
+     */
+    private CommandDefinition completionTarget(String keyword) {
+        final var command = commandIndex.find(aliases.getOrDefault(keyword, keyword));
+        return command == CommandIndex.AMBIGUOUS ? null : command;
     }
 
-    private ParameterParser parseLine(CommandEnvironment env, Set<String> parameters) {
-        return ParameterParser.parse(env.line(), parameters);
+    private ParameterParser parseLine(CommandEnvironment env, CommandDefinition comDef) {
+        return ParameterParser.parse(env.line(), comDef.parameters, comDef.values);
     }
 
-    private boolean matchRegexes(ReplCommandEnvironment env, Map<String, Pattern> regexes) {
-        if (regexes != null) {
-            for (final var entry : regexes.entrySet()) {
-                final var matcher = entry.getValue().matcher(env.line());
-                if (matcher.matches()) {
-                    env.matcher = matcher;
-                    env.matcherId = entry.getKey();
-                    return true;
-                }
-            }
-            return false;
-        }
-        return true;
+    private boolean matchRegexes(ReplCommandEnvironment env, SyntaxMatcher regexes) {
+        return regexes == null || regexes.match(env);
     }
 
     private void seekAlias(ReplCommandEnvironment env) {
@@ -1,5 +1,6 @@
 package javax0.repl;
 
+import java.io.BufferedReader;
 import java.util.regex.Matcher;
 
 class ReplCommandEnvironment implements CommandEnvironment {
@@ -9,7 +10,11 @@ class ReplCommandEnvironment implements CommandEnvironment {
     Matcher matcher;
     String matcherId;
     LocalConsole console;
+    BufferedReader input;
     Message message;
+    volatile boolean cancelled;
+    boolean interruptible;
+    boolean piped;
     final Repl repl;
 
     ReplCommandEnvironment(Repl repl) {
@@ -51,8 +56,18 @@ class ReplCommandEnvironment implements CommandEnvironment {
         return console;
     }
 
+    @Override
+    public BufferedReader input() {
+        return input == null ? CommandEnvironment.super.input() : input;
+    }
+
     @Override
     public Message message() {
         return message;
     }
+
+    @Override
+    public boolean cancelled() {
+        return cancelled;
+    }
 }
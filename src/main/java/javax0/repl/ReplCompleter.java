@@ -5,74 +5,155 @@ import org.jline.reader.Candidate;
 import org.jline.reader.Completer;
 import org.jline.reader.LineReader;
 import org.jline.reader.ParsedLine;
-import org.jline.reader.impl.completer.AggregateCompleter;
-import org.jline.reader.impl.completer.StringsCompleter;
 
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 /**
- * A jline {@link Completer} object that contains all the strings that can be used to auto complete the actual command
- * line. The list contains all the commands, all the parameters to all the commands, and the file name complementer is
- * also added.
+ * A jline {@link Completer} object that completes the actual command line.
+ * <p>
+ * The first word of the line is completed from a {@link CompletionIndex} that contains the keywords of the commands
+ * and the aliases. The index is created once together with the console and the commands and aliases defined later
+ * are added to it calling {@link #commandDefined(CommandDefinition)}, {@link #aliasDefined(String)} and
+ * {@link #aliasRemoved(String)}.
+ * <p>
+ * For the other words the command is resolved the same way as when the line is executed: aliases are replaced and
+ * abbreviated keywords are resolved. The names of the parameters of the command are offered followed by {@code =}
+ * and after the {@code =} the values registered for the parameter. The values of the parameters and the positional
+ * arguments that have a completion supplier come from a {@link CompletionCache}. File names are also offered when
+ * there are no values for the word.
  */
 class ReplCompleter implements Completer {
-    private Completer commandCompleter;
-    final List<CommandDefinition> commandDefinitions;
+    private final CompletionIndex keywords = new CompletionIndex();
+    private final Function<String, CommandDefinition> resolver;
+    private final Completer fileNameCompleter = new Completers.FileNameCompleter();
+    private final CompletionCache cache = new CompletionCache(256, Duration.ofSeconds(30), Duration.ofSeconds(2),
+        Duration.ofMillis(100));
 
-    public ReplCompleter(final List<CommandDefinition> commandDefinitions, final Set<String> aliasNames) {
-        this.commandDefinitions = commandDefinitions;
-        setCompleter(commandDefinitions, aliasNames);
+    /**
+     * @param commandDefinitions the commands defined so far
+     * @param aliasNames         the aliases defined so far
+     * @param resolver           finds the command for the first word of the line, returns {@code null} if there is
+     *                           no such command or the keyword is ambiguous
+     */
+    ReplCompleter(final List<CommandDefinition> commandDefinitions, final Set<String> aliasNames,
+                  final Function<String, CommandDefinition> resolver) {
+        this.resolver = resolver;
+        commandDefinitions.forEach(this::commandDefined);
+        aliasNames.forEach(this::aliasDefined);
     }
 
-    public void setCompleter(final List<CommandDefinition> commandDefinitions, final Set<String> aliasNames) {
-        commandCompleter = new AggregateCompleter(
-            // all the commands
-            new StringsCompleter(commandDefinitions.stream()
-                // keywords starting with '*' are not abbreviated, but
-                // still can be used in auto-complete w/o the '*' of course
-                .map(c -> c.keyword.replaceAll("^\\*", ""))
-                .collect(Collectors.toSet())),
-            new StringsCompleter(aliasNames),
-            new Completers.FileNameCompleter()
-        );
+    /**
+     * Create a completer for a fixed set of commands.
+     *
+     * @param commandDefinitions the commands
+     * @param aliasNames         the names of the aliases, these are completed only as the first word
+     * @return the new completer
+     */
+    static ReplCompleter of(final List<CommandDefinition> commandDefinitions, final Set<String> aliasNames) {
+        var index = CommandIndex.EMPTY;
+        for (final var commandDefinition : commandDefinitions) {
+            index = index.with(commandDefinition);
+        }
+        final var commandIndex = index;
+        return new ReplCompleter(commandDefinitions, aliasNames, keyword -> {
+            final var command = commandIndex.find(keyword);
+            return command == CommandIndex.AMBIGUOUS ? null : command;
+        });
+    }
+
+    /**
+     * Add a new command or replace the command that has the same keyword.
+     *
+     * @param commandDefinition the new command
+     */
+    void commandDefined(CommandDefinition commandDefinition) {
+        // keywords starting with '*' are not abbreviated, but
+        // still can be used in auto-complete w/o the '*' of course
+        keywords.add(commandDefinition.keyword.replaceAll("^\\*", ""));
+    }
 
+    void aliasDefined(String alias) {
+        keywords.add(alias);
     }
 
-    private final static CommandDefinition EMPTY_COMMAND_DEFINITION = new CommandDefinition(
-        null, Set.of(), null, null, null, null);
+    void aliasRemoved(String alias) {
+        keywords.remove(alias);
+    }
 
     @Override
     public void complete(LineReader lineReader, ParsedLine parsedLine, List<Candidate> list) {
-        final Completer actualCompleter;
-        final String line = parsedLine.line();
-        if (line.contains(" ")) {
-            actualCompleter = getCommandSpecificCompleter(line);
+        if (parsedLine.wordIndex() == 0) {
+            keywords.collect(parsedLine.word(), keyword -> list.add(new Candidate(keyword)));
         } else {
-            actualCompleter = commandCompleter;
+            final var commandDefinition = resolve(parsedLine.words().get(0));
+            if (commandDefinition != null && completeParameter(commandDefinition, parsedLine, list)) {
+                return;
+            }
+        }
+        fileNameCompleter.complete(lineReader, parsedLine, list);
+    }
+
+    private CommandDefinition resolve(String keyword) {
+        try {
+            final var commandDefinition = resolver.apply(keyword);
+            return commandDefinition == null ? null : commandDefinition.definition();
+        } catch (RuntimeException e) {
+            // a command provider failed, there is nothing to complete
+            return null;
         }
-        actualCompleter.complete(lineReader, parsedLine, list);
     }
 
-    private Map<String, Completer> completerMap = new HashMap<>();
+    /**
+     * Add the parameter names, the values of the parameter or the values of the positional argument to the
+     * candidates.
+     *
+     * @return {@code true} if there are values for the word, so that file names should not be offered
+     */
+    private boolean completeParameter(CommandDefinition commandDefinition, ParsedLine parsedLine,
+                                      List<Candidate> list) {
+        final var parameters = commandDefinition.parameters;
+        final var word = parsedLine.word();
+        final int eq = word.indexOf('=');
+        if (eq == -1) {
+            if (parameters != null) {
+                for (final var parameter : parameters) {
+                    list.add(new Candidate(parameter + "=", parameter, null, null, null, null, false));
+                }
+            }
+            final var values = cache.get(commandDefinition, "#" + positionalIndex(parsedLine));
+            values.forEach(value -> list.add(new Candidate(value)));
+            return !values.isEmpty();
+        }
+        final var typedKey = word.substring(0, eq);
+        final String key;
+        try {
+            key = parameters instanceof ValueSet ? ((ValueSet) parameters).resolve(typedKey) : typedKey;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        final Collection<String> values = commandDefinition.values.containsKey(key) ?
+            commandDefinition.values.get(key) : cache.get(commandDefinition, key);
+        for (final var value : values) {
+            list.add(new Candidate(typedKey + "=" + value, value, null, null, null, null, true));
+        }
+        return !values.isEmpty();
+    }
 
-    private Completer getCommandSpecificCompleter(String line) {
-        Completer actualCompleter;
-        final String keyword = line.substring(0, line.indexOf(' '));
-        if (completerMap.containsKey(keyword)) {
-            return completerMap.get(keyword);
+    /**
+     * @return the index of the positional argument the word under the cursor is, not counting the keyword and the
+     * {@code key=value} parameters
+     */
+    private static int positionalIndex(ParsedLine parsedLine) {
+        int index = 0;
+        for (int i = 1; i < parsedLine.wordIndex(); i++) {
+            if (parsedLine.words().get(i).indexOf('=') == -1) {
+                index++;
+            }
         }
-        CommandDefinition commandDefinition =
-            commandDefinitions.stream().filter(cd -> cd.keyword.equals(keyword)).findFirst()
-                .orElse(EMPTY_COMMAND_DEFINITION);
-        actualCompleter = new AggregateCompleter(
-            new StringsCompleter(commandDefinition.parameters),
-            new Completers.FileNameCompleter()
-        );
-        completerMap.put(keyword, actualCompleter);
-        return actualCompleter;
+        return index;
     }
 }
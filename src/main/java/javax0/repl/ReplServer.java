@@ -0,0 +1,150 @@
+package javax0.repl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A server that lets many users work with the same REPL application at the same time connecting over TCP.
+ * <p>
+ * Every connection gets its own session. A session has its own console reading and writing the connection, its own
+ * aliases, messages and exit state, but all the sessions use the commands defined in the {@link Repl} object passed
+ * to the constructor. The commands and the aliases are copied when the server is started, the ones defined later are
+ * not available in the sessions. The command implementations should use {@link CommandEnvironment#repl()} to access
+ * the session they run in.
+ * <p>
+ * The server does not authenticate the users. Anybody who can connect to the port can execute the commands of the
+ * application with the rights of the process. For this reason the shell commands starting with {@code !}, the
+ * execution of files with {@code .} and the redirection of the output into files with {@code >} are not allowed in
+ * the sessions unless they are allowed calling {@link #allowShell()} and {@link #allowFiles()}. Allowing them gives
+ * every user who can connect full access to the machine, especially when the server listens on an address that is
+ * reachable from other machines.
+ * <p>
+ * A simple usage is
+ * <pre>{@code
+ * new ReplServer(repl, 4000).start();
+ * }</pre>
+ * after which the application can be used with {@code telnet localhost 4000} or {@code nc localhost 4000}.
+ */
+public class ReplServer implements Closeable {
+    private final Repl repl;
+    private final ServerSocket serverSocket;
+    private boolean shell;
+    private boolean files;
+    // the copy of the configured Repl object taken at the start, the sessions are created from this object
+    private Repl template;
+    private final ExecutorService sessions = Executors.newCachedThreadPool(runnable -> {
+        final var thread = new Thread(runnable, "repl-session");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Create a server listening on the loopback interface.
+     *
+     * @param repl the configured Repl object, the template of the sessions
+     * @param port the port to listen on, zero to use any free port
+     * @throws IOException if the port cannot be opened
+     */
+    public ReplServer(Repl repl, int port) throws IOException {
+        this(repl, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * Create a server listening on the given address.
+     *
+     * @param repl    the configured Repl object, the template of the sessions
+     * @param address the address to listen on
+     * @throws IOException if the port cannot be opened
+     */
+    public ReplServer(Repl repl, InetSocketAddress address) throws IOException {
+        this.repl = repl;
+        serverSocket = new ServerSocket();
+        serverSocket.bind(address);
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Allow the users to execute operating system shell commands starting the line with {@code !}. It has to be
+     * called before {@link #start()}.
+     *
+     * @return this
+     */
+    public ReplServer allowShell() {
+        shell = true;
+        return this;
+    }
+
+    /**
+     * Allow the users to execute any file the process can read starting the line with {@code .} and to write the
+     * output of the commands into any file the process can write with {@code >} and {@code >>}. It has to be called
+     * before {@link #start()}.
+     *
+     * @return this
+     */
+    public ReplServer allowFiles() {
+        files = true;
+        return this;
+    }
+
+    /**
+     * Start accepting the connections on a background thread.
+     *
+     * @return this
+     */
+    public ReplServer start() {
+        template = repl.session(null);
+        template.allow(shell, files);
+        final var acceptor = new Thread(this::accept, "repl-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return this;
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final var socket = serverSocket.accept();
+                sessions.execute(() -> serve(socket));
+            } catch (SocketException e) {
+                // the server socket was closed
+                return;
+            } catch (IOException ignored) {
+                // the connection failed, the server goes on accepting other connections
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            final var console = new StreamConsole(socket.getInputStream(), socket.getOutputStream());
+            template.session(console).run();
+            console.writer().flush();
+        } catch (IOException ignored) {
+            // the client has closed the connection
+        }
+    }
+
+    /**
+     * Stop accepting new connections. The sessions already running are not closed, they end when the users exit.
+     *
+     * @throws IOException if closing the server socket fails
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        sessions.shutdown();
+    }
+}
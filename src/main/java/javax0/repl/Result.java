@@ -0,0 +1,88 @@
+package javax0.repl;
+
+import java.util.List;
+
+/**
+ * The result of a line executed calling {@link Repl#eval(String)}.
+ */
+public final class Result {
+    public enum Status {
+        /**
+         * The command was executed and it did not report any error.
+         */
+        OK,
+        /**
+         * The command was executed and it reported an error or threw an exception.
+         */
+        FAILED,
+        /**
+         * The command was cancelled because its timeout was over.
+         */
+        CANCELLED,
+        /**
+         * The parameters on the line are not correct or the line does not match any of the syntax patterns of the
+         * command. The command was not executed.
+         */
+        INVALID,
+        /**
+         * There is no command to execute: the line is empty, the keyword is not defined, it is ambiguous or it is a
+         * built-in command.
+         */
+        NOT_FOUND
+    }
+
+    private final Status status;
+    private final String command;
+    private final String matcherId;
+    private final String output;
+    private final List<Message.Entry> messages;
+
+    Result(Status status, String command, String matcherId, String output, List<Message.Entry> messages) {
+        this.status = status;
+        this.command = command;
+        this.matcherId = matcherId;
+        this.output = output;
+        this.messages = messages;
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    /**
+     * @return {@code true} if the status is {@link Status#OK}
+     */
+    public boolean ok() {
+        return status == Status.OK;
+    }
+
+    /**
+     * @return the keyword of the command as it is defined, after the aliases and the abbreviation were resolved, or
+     * {@code null} if the status is {@link Status#NOT_FOUND}
+     */
+    public String command() {
+        return command;
+    }
+
+    /**
+     * @return the name of the regular expression that matched the line or {@code null} if the command has no regular
+     * expressions or none of them matched
+     */
+    public String matcherId() {
+        return matcherId;
+    }
+
+    /**
+     * @return the text the command printed to its console
+     */
+    public String output() {
+        return output;
+    }
+
+    /**
+     * @return the messages of the command, the errors first, then the warnings and the informational messages
+     */
+    public List<Message.Entry> messages() {
+        return messages;
+    }
+}
@@ -0,0 +1,258 @@
+package javax0.repl;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The execution of the lines of a file.
+ * <p>
+ * In the simple case the lines are executed one after the other using the same environment and the messages are
+ * printed after each line. When the parallel execution is switched on the consecutive lines that invoke commands
+ * defined to be thread safe are executed in the {@link ForkJoinPool#commonPool()}. These commands have their own
+ * environment, their own messages and their output is collected into a buffer. The output and the messages of the
+ * commands are printed in the order of the lines in the file when the commands have finished.
+ * <p>
+ * When the script is compiled, see {@link ScriptCache}, the executed lines are recorded in the compiled form and the
+ * lines of a script compiled earlier can be executed without resolving and parsing them.
+ */
+class Script {
+    private static final int WINDOW = 4 * Runtime.getRuntime().availableProcessors();
+
+    private final Repl repl;
+    private final LocalConsole console;
+    private final PrintWriter out;
+    private final int flushLines;
+    private final boolean parallel;
+    private final ReplCommandEnvironment env;
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private long lines;
+    private long errors;
+    private List<ScriptCache.Line> compiled;
+
+    /**
+     * @param repl       the repl that executes the commands
+     * @param message    the message object used by the commands executed on the calling thread
+     * @param console    the console the commands get in their environment
+     * @param out        the writer the messages and the collected output are written to
+     * @param flushLines flush the writer after this many lines, never when zero
+     * @param parallel   execute thread safe commands in parallel
+     */
+    Script(Repl repl, Message message, LocalConsole console, PrintWriter out, int flushLines, boolean parallel) {
+        this.repl = repl;
+        this.console = console;
+        this.out = out;
+        this.flushLines = flushLines;
+        this.parallel = parallel;
+        env = new ReplCommandEnvironment(repl);
+        env.message = message;
+        env.console = console;
+    }
+
+    private static class Pending {
+        final ReplCommandEnvironment env;
+        final CommandDefinition comDef;
+        final String line;
+        final ScriptCache.Line compiled;
+        final StringWriter output = new StringWriter();
+        int slot = -1;
+        Future<?> future;
+
+        Pending(ReplCommandEnvironment env, CommandDefinition comDef, String line, ScriptCache.Line compiled) {
+            this.env = env;
+            this.comDef = comDef;
+            this.line = line;
+            this.compiled = compiled;
+        }
+    }
+
+    /**
+     * Record the compiled form of the lines executed from now on.
+     */
+    void compile() {
+        compiled = new ArrayList<>();
+    }
+
+    /**
+     * @return the compiled form of the executed lines. It has to be called after {@link #finish()}.
+     */
+    List<ScriptCache.Line> compiled() {
+        return compiled;
+    }
+
+    /**
+     * Execute a non-blank line of the file.
+     *
+     * @param line the line
+     */
+    void execute(String line) {
+        execute(line, null);
+    }
+
+    /**
+     * Execute a line of a compiled script.
+     *
+     * @param line the compiled line
+     */
+    void execute(ScriptCache.Line line) {
+        execute(line.text, line.compiled() ? line : null);
+    }
+
+    private void execute(String line, ScriptCache.Line compiledLine) {
+        // most of the lines have neither '|' nor '>', those are not parsed for a pipeline or a redirection
+        if (compiledLine == null && (line.indexOf('|') != -1 || line.indexOf('>') != -1)
+            && (Redirection.of(line) != null || Pipeline.split(line).size() > 1)) {
+            executeAlone(line);
+            return;
+        }
+        if (!parallel) {
+            CommandDefinition comDef = null;
+            try {
+                comDef = resolve(env, line, compiledLine);
+                if (comDef != null) {
+                    repl.invoke(env, comDef, compiledLine);
+                    repl.report(env, comDef);
+                }
+            } catch (Exception e) {
+                env.message.error("" + e);
+            }
+            record(line, env, comDef);
+            done(env.message);
+            return;
+        }
+        final var lineEnv = new ReplCommandEnvironment(repl);
+        lineEnv.message = new Message();
+        lineEnv.console = console;
+        CommandDefinition comDef = null;
+        try {
+            comDef = resolve(lineEnv, line, compiledLine);
+        } catch (Exception e) {
+            lineEnv.message.error("" + e);
+        }
+        if (comDef != null && comDef.threadSafe) {
+            submit(new Pending(lineEnv, comDef, line, compiledLine));
+            return;
+        }
+        finish();
+        if (comDef != null) {
+            try {
+                repl.invoke(lineEnv, comDef, compiledLine);
+                repl.report(lineEnv, comDef);
+            } catch (Exception e) {
+                lineEnv.message.error("" + e);
+            }
+        }
+        record(line, lineEnv, comDef);
+        done(lineEnv.message);
+    }
+
+    /**
+     * Execute a line that is a pipeline or redirects its output after the commands started before have finished. The
+     * line is recorded as it is in the compiled script.
+     */
+    private void executeAlone(String line) {
+        finish();
+        final var lineEnv = new ReplCommandEnvironment(repl);
+        lineEnv.message = parallel ? new Message() : env.message;
+        lineEnv.console = console;
+        try {
+            repl.execute(lineEnv, line);
+        } catch (Exception e) {
+            lineEnv.message.error("" + e);
+        }
+        record(line, lineEnv, null);
+        done(lineEnv.message);
+    }
+
+    private CommandDefinition resolve(ReplCommandEnvironment env, String line, ScriptCache.Line compiledLine) {
+        return compiledLine == null ? repl.resolve(env, line) : repl.resolve(env, compiledLine);
+    }
+
+    private void record(String line, ReplCommandEnvironment env, CommandDefinition comDef) {
+        if (compiled != null) {
+            compiled.add(ScriptCache.Line.of(line, env, comDef));
+        }
+    }
+
+    private void submit(Pending p) {
+        if (pending.size() >= WINDOW) {
+            complete(pending.removeFirst());
+        }
+        p.env.console = new BufferedConsole(console, new PrintWriter(p.output));
+        if (compiled != null) {
+            // the line is recorded when it has finished, but it keeps its place in the script
+            p.slot = compiled.size();
+            compiled.add(null);
+        }
+        p.future = ForkJoinPool.commonPool().submit(() -> {
+            try {
+                repl.invoke(p.env, p.comDef, p.compiled);
+            } catch (Exception e) {
+                p.env.message.error("" + e);
+            }
+        });
+        pending.add(p);
+    }
+
+    private void complete(Pending p) {
+        try {
+            p.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            p.env.message.error("" + e);
+        } catch (ExecutionException e) {
+            p.env.message.error("" + e.getCause());
+        }
+        out.write(p.output.toString());
+        p.env.console = console;
+        try {
+            repl.report(p.env, p.comDef);
+        } catch (Exception e) {
+            p.env.message.error("" + e);
+        }
+        if (compiled != null) {
+            compiled.set(p.slot, ScriptCache.Line.of(p.line, p.env, p.comDef));
+        }
+        done(p.env.message);
+    }
+
+    /**
+     * Wait for all the commands executing in parallel and print their output and messages.
+     */
+    void finish() {
+        while (!pending.isEmpty()) {
+            complete(pending.removeFirst());
+        }
+    }
+
+    private void done(Message message) {
+        if (message.errorCount() > 0) {
+            errors++;
+        }
+        message.writeTo(out);
+        lines++;
+        if (flushLines > 0 && lines % flushLines == 0) {
+            out.flush();
+        }
+    }
+
+    /**
+     * @return the number of the lines executed
+     */
+    long lines() {
+        return lines;
+    }
+
+    /**
+     * @return the number of the lines that had error messages
+     */
+    long errors() {
+        return errors;
+    }
+}
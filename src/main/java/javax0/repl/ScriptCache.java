@@ -0,0 +1,289 @@
+package javax0.repl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The cache of the compiled scripts.
+ * <p>
+ * When a script file is executed the first time every line is recorded with the command it invoked, the rest of the
+ * line after the keyword, the parsed parameters and the index of the regular expression that matched the line. The
+ * compiled script is saved into a file in the cache directory. The name of the file is the SHA-256 hash of the
+ * content of the script together with a fingerprint of the commands and the aliases of the Repl, thus the compiled
+ * script is used only when neither the script nor the definitions the resolution of the lines depend on has
+ * changed. The lines of a compiled script are executed without looking up the keywords and the aliases and without
+ * parsing the parameters. Only the regular expression that matched the line is matched again, because the command
+ * needs the {@link java.util.regex.Matcher}.
+ * <p>
+ * The lines that could not be resolved, parsed or matched when the script was compiled are saved as they are and
+ * they are executed the usual way reporting the same errors.
+ */
+class ScriptCache {
+    private static final int MAGIC = 0x52504C53; // "RPLS"
+    private static final int FORMAT = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path directory;
+
+    /**
+     * @param directory the directory to store the compiled scripts in
+     */
+    ScriptCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * A line of a compiled script.
+     */
+    static class Line {
+        // the line as it is in the script, null for the compiled lines loaded from the cache
+        final String text;
+        // the keyword of the command as it is defined, null if the line is not compiled
+        final String command;
+        // the keyword after the alias was resolved, as the command sees it
+        final String keyword;
+        // the rest of the line after the keyword
+        final String rest;
+        final int matcher;
+        final ParameterParser parser;
+
+        private Line(String text, String command, String keyword, String rest, int matcher, ParameterParser parser) {
+            this.text = text;
+            this.command = command;
+            this.keyword = keyword;
+            this.rest = rest;
+            this.matcher = matcher;
+            this.parser = parser;
+        }
+
+        /**
+         * Create the compiled form of a line from the environment that executed it.
+         *
+         * @param text   the line as it is in the script
+         * @param env    the environment after the execution of the line
+         * @param comDef the command the line invoked or {@code null} if the line could not be resolved
+         * @return the compiled line
+         */
+        static Line of(String text, ReplCommandEnvironment env, CommandDefinition comDef) {
+            if (comDef == null || env.parser == null || (comDef.regexes != null && env.matcherId == null)) {
+                return new Line(text, null, null, null, -1, null);
+            }
+            return new Line(text, comDef.keyword, env.keyword, env.line,
+                comDef.regexes == null ? -1 : comDef.regexes.indexOf(env.matcherId), env.parser);
+        }
+
+        boolean compiled() {
+            return command != null;
+        }
+    }
+
+    /**
+     * Calculate the file name of the compiled script.
+     *
+     * @param content     the content of the script
+     * @param fingerprint the fingerprint of the commands and the aliases of the Repl
+     * @return the file of the compiled script in the cache directory, which may not exist
+     */
+    Path file(byte[] content, String fingerprint) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(content);
+            digest.update((FORMAT + "\n" + fingerprint).getBytes(StandardCharsets.UTF_8));
+            final var sb = new StringBuilder();
+            for (final var b : digest.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return directory.resolve(sb.append(".rpls").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Load a compiled script.
+     *
+     * @param file the file returned by {@link #file(byte[], String)}
+     * @return the lines of the script or {@code null} if the script was not compiled yet
+     * @throws IOException if the file cannot be read or it is not a compiled script
+     */
+    List<Line> load(Path file) throws IOException {
+        final byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            final var in = new Input(bytes);
+            if (in.varInt() != MAGIC || in.varInt() != FORMAT) {
+                throw new IOException("'" + file + "' is not a compiled script");
+            }
+            in.table = new String[in.varInt()];
+            for (int i = 0; i < in.table.length; i++) {
+                in.table[i] = in.text();
+            }
+            final int n = in.varInt();
+            final var lines = new ArrayList<Line>(n);
+            for (int i = 0; i < n; i++) {
+                if (in.bytes[in.pos++] != 0) {
+                    final var command = in.symbol();
+                    final var keyword = in.symbol();
+                    final var rest = in.text();
+                    final var matcher = in.varInt() - 1;
+                    // the text of a compiled line is only needed to compile it again, which does not happen
+                    lines.add(new Line(null, command, keyword, rest, matcher, ParameterParser.readFrom(rest, in)));
+                } else {
+                    lines.add(new Line(in.text(), null, null, null, -1, null));
+                }
+            }
+            return lines;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("'" + file + "' is not a compiled script");
+        }
+    }
+
+    /**
+     * Save a compiled script. The script is written into a temporary file first, which is then renamed, so that
+     * Repl processes that execute the same script at the same time never see a partially written file.
+     *
+     * @param file  the file returned by {@link #file(byte[], String)}
+     * @param lines the lines of the script
+     * @throws IOException if the file cannot be written
+     */
+    void save(Path file, List<Line> lines) throws IOException {
+        final var body = new Output();
+        body.varInt(lines.size());
+        for (final var line : lines) {
+            if (line.compiled()) {
+                body.write(1);
+                body.symbol(line.command);
+                body.symbol(line.keyword);
+                body.text(line.rest);
+                body.varInt(line.matcher + 1);
+                line.parser.writeTo(body);
+            } else {
+                body.write(0);
+                body.text(line.text);
+            }
+        }
+        final var header = new Output();
+        header.varInt(MAGIC);
+        header.varInt(FORMAT);
+        header.varInt(body.table.size());
+        for (final var symbol : body.table) {
+            header.text(symbol);
+        }
+        Files.createDirectories(directory);
+        final var temp = Files.createTempFile(directory, "script", ".tmp");
+        try {
+            try (final var out = Files.newOutputStream(temp)) {
+                out.write(header.bytes, 0, header.size);
+                out.write(body.bytes, 0, body.size);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * The encoder of the compiled script. The numbers are written in variable length, most of them fit into one
+     * byte. The strings that repeat, like the keywords and the parameter names, are written once into a table and
+     * referenced by their index.
+     */
+    static final class Output {
+        private byte[] bytes = new byte[BUFFER_SIZE];
+        private int size;
+        private final Map<String, Integer> symbols = new HashMap<>();
+        private final List<String> table = new ArrayList<>();
+
+        private void write(int b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) b;
+        }
+
+        void varInt(int n) {
+            while ((n & ~0x7F) != 0) {
+                write((n & 0x7F) | 0x80);
+                n >>>= 7;
+            }
+            write(n);
+        }
+
+        /**
+         * Write a string that may be {@code null} into the table, unless it is already there, and its index.
+         */
+        void symbol(String s) {
+            if (s == null) {
+                varInt(0);
+                return;
+            }
+            var index = symbols.get(s);
+            if (index == null) {
+                index = table.size();
+                symbols.put(s, index);
+                table.add(s);
+            }
+            varInt(index + 1);
+        }
+
+        private void text(String s) {
+            final var utf8 = s.getBytes(StandardCharsets.UTF_8);
+            varInt(utf8.length);
+            if (size + utf8.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size * 2, size + utf8.length));
+            }
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+    }
+
+    /**
+     * The decoder of the compiled script.
+     */
+    static final class Input {
+        private final byte[] bytes;
+        private int pos;
+        private String[] table;
+
+        private Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int varInt() {
+            int n = 0;
+            for (int shift = 0; ; shift += 7) {
+                final int b = bytes[pos++];
+                n |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return n;
+                }
+            }
+        }
+
+        String symbol() {
+            final int index = varInt();
+            return index == 0 ? null : table[index - 1];
+        }
+
+        private String text() {
+            final int length = varInt();
+            final var s = new String(bytes, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+    }
+}
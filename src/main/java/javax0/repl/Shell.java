@@ -0,0 +1,136 @@
+package javax0.repl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * An operating system shell command started from the REPL using the {@code !} command.
+ * <p>
+ * The standard output and the standard error of the process are read on two separate threads and every line is
+ * printed to the console as soon as it arrives. The lines coming from the standard error are prefixed with
+ * {@code [STDERR]}. Since both streams are drained continuously the process cannot block on a full pipe.
+ */
+class Shell {
+    private static final boolean isWindows = System.getProperty("os.name").toLowerCase().startsWith("windows");
+    // the time to wait for the output of the process after it has finished
+    private static final long DRAIN_MILLIS = 1000;
+
+    private final Process process;
+    private final PrintWriter w;
+    private Thread out;
+    private Thread err;
+    private volatile boolean cancelled;
+    private boolean timedOut;
+
+    /**
+     * Start the shell command. The output of the process is not read until {@link #pump()} is called.
+     *
+     * @param command the command line to be executed by the shell
+     * @param w       the writer to print the output of the command to
+     * @throws IOException if the process cannot be started
+     */
+    Shell(String command, PrintWriter w) throws IOException {
+        this.w = w;
+        process = new ProcessBuilder(commandLine(command)).start();
+        process.getOutputStream().close();
+    }
+
+    /**
+     * Start printing the output of the process. The caller can print a header before calling this method, which
+     * will be printed before the output.
+     *
+     * @return this
+     */
+    Shell pump() {
+        out = pump(process.getInputStream(), w, "");
+        err = pump(process.getErrorStream(), w, "[STDERR] ");
+        return this;
+    }
+
+    static List<String> commandLine(String command) {
+        if (isWindows) {
+            return List.of("cmd.exe", "/c", command);
+        } else {
+            return List.of("sh", "-c", command);
+        }
+    }
+
+    private static Thread pump(InputStream in, PrintWriter w, String prefix) {
+        final var thread = new Thread(() -> {
+            try (final var reader = new BufferedReader(new InputStreamReader(in))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    synchronized (w) {
+                        w.print(prefix);
+                        w.print(line);
+                        w.print('\n');
+                        w.flush();
+                    }
+                }
+            } catch (IOException ignored) {
+                // the stream is closed when the process is killed
+            }
+        }, "repl-shell-output");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Wait for the process to finish. It has to be called after {@link #pump()}.
+     *
+     * @param timeout the maximum time to wait or {@code null} to wait until the process finishes. When the time is
+     *                up the process is killed.
+     * @return the exit code of the process
+     * @throws InterruptedException if the waiting thread is interrupted. In this case the process is killed.
+     */
+    int waitFor(Duration timeout) throws InterruptedException {
+        try {
+            if (timeout == null) {
+                process.waitFor();
+            } else if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                timedOut = true;
+                kill();
+                process.waitFor();
+            }
+        } catch (InterruptedException e) {
+            kill();
+            throw e;
+        }
+        // processes started in the background by the command may keep the pipes open
+        out.join(DRAIN_MILLIS);
+        err.join(DRAIN_MILLIS);
+        return process.exitValue();
+    }
+
+    /**
+     * Kill the process and the processes it started. This method can be called from any thread, for example from the
+     * handler of Ctrl-C.
+     */
+    void cancel() {
+        cancelled = true;
+        kill();
+    }
+
+    private void kill() {
+        // the shell is killed first, otherwise it may report the death of its child on the standard error
+        final var descendants = process.descendants().collect(Collectors.toList());
+        process.destroy();
+        descendants.forEach(ProcessHandle::destroy);
+    }
+
+    boolean cancelled() {
+        return cancelled;
+    }
+
+    boolean timedOut() {
+        return timedOut;
+    }
+}
@@ -0,0 +1,40 @@
+package javax0.repl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link LocalConsole} implementation that reads from an input stream and writes to an output stream, both using
+ * UTF-8 encoding. The server uses it for the sessions connected over the network.
+ */
+public class StreamConsole implements LocalConsole {
+    private final BufferedReader reader;
+    private final PrintWriter writer;
+
+    public StreamConsole(InputStream in, OutputStream out) {
+        reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public PrintWriter writer() {
+        return writer;
+    }
+
+    @Override
+    public String readLine(String msg) {
+        writer.print(msg);
+        writer.flush();
+        try {
+            return reader.readLine();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package javax0.repl;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The compiled form of the regular expressions of a command.
+ * <p>
+ * The regular expressions are tried in the order they were declared. Every expression has a prefilter calculated when
+ * the command is defined. The prefilter is a literal string the matching line has to start with or a character class
+ * the first character of the matching line has to belong to. Expressions that cannot match the line according to the
+ * prefilter are skipped without starting the regular expression engine.
+ * <p>
+ * The expressions are not merged into one alternation, because that would renumber the capturing groups the commands
+ * use via {@link CommandEnvironment#matcher()}. Instead a single {@link Matcher} object is created for the line and it
+ * is switched from one pattern to the next.
+ */
+class SyntaxMatcher {
+    private static final int ANY = 0;
+    private static final int DIGIT = 1;
+    private static final int SPACE = 2;
+    private static final int WORD = 3;
+    private static final String META = "\\^$.|?*+()[]{}";
+
+    private final String[] names;
+    private final Pattern[] patterns;
+    private final String[] prefixes;
+    private final int[] firstClasses;
+
+    private SyntaxMatcher(Map<String, String> regexes) {
+        final int n = regexes.size();
+        names = new String[n];
+        patterns = new Pattern[n];
+        prefixes = new String[n];
+        firstClasses = new int[n];
+        int i = 0;
+        for (final var entry : regexes.entrySet()) {
+            names[i] = entry.getKey();
+            patterns[i] = Pattern.compile(entry.getValue());
+            analyze(entry.getValue(), i);
+            i++;
+        }
+    }
+
+    /**
+     * Compile the regular expressions.
+     *
+     * @param regexes the regular expressions keyed by their names in the order of the declaration
+     * @return the new matcher or {@code null} if the argument is {@code null}
+     */
+    static SyntaxMatcher of(Map<String, String> regexes) {
+        return regexes == null ? null : new SyntaxMatcher(regexes);
+    }
+
+    /**
+     * Match the line of the environment against the regular expressions and set the matcher and the matcher id in
+     * the environment if there is a match.
+     *
+     * @param env the environment containing the line
+     * @return {@code true} if one of the regular expressions matched the line
+     */
+    boolean match(ReplCommandEnvironment env) {
+        final var line = env.line;
+        Matcher matcher = null;
+        for (int i = 0; i < patterns.length; i++) {
+            if (!line.startsWith(prefixes[i]) || !firstMatches(firstClasses[i], line)) {
+                continue;
+            }
+            if (matcher == null) {
+                matcher = patterns[i].matcher(line);
+            } else {
+                matcher.usePattern(patterns[i]).reset();
+            }
+            if (matcher.matches()) {
+                env.matcher = matcher;
+                env.matcherId = names[i];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Match the line of the environment against the regular expression that matched the same line earlier and set
+     * the matcher and the matcher id in the environment. It is used to execute a line of a compiled script, see
+     * {@link ScriptCache}.
+     *
+     * @param env   the environment containing the line
+     * @param index the index of the regular expression, as returned by {@link #indexOf(String)}
+     * @return {@code true} if the regular expression matched the line
+     */
+    boolean match(ReplCommandEnvironment env, int index) {
+        final var matcher = patterns[index].matcher(env.line);
+        if (matcher.matches()) {
+            env.matcher = matcher;
+            env.matcherId = names[index];
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param name the name of a regular expression
+     * @return the index of the regular expression or -1 if there is no regular expression with the name
+     */
+    int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Append the names and the regular expressions to the string builder.
+     *
+     * @param sb the builder to append to
+     */
+    void fingerprint(StringBuilder sb) {
+        for (int i = 0; i < names.length; i++) {
+            sb.append(names[i]).append('=').append(patterns[i].pattern()).append('\n');
+        }
+    }
+
+    private static boolean firstMatches(int firstClass, String line) {
+        if (firstClass == ANY) {
+            return true;
+        }
+        if (line.isEmpty()) {
+            return false;
+        }
+        final char c = line.charAt(0);
+        switch (firstClass) {
+            case DIGIT:
+                return c >= '0' && c <= '9';
+            case SPACE:
+                return Character.isWhitespace(c);
+            default:
+                return c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+        }
+    }
+
+    /**
+     * Calculate the prefilter of the regular expression. The analysis is conservative: whenever the expression
+     * contains a construct that is not handled here the prefilter lets every line through.
+     */
+    private void analyze(String regex, int index) {
+        prefixes[index] = "";
+        firstClasses[index] = ANY;
+        if (regex.indexOf('|') >= 0) {
+            return;
+        }
+        final int n = regex.length();
+        int i = regex.startsWith("^") ? 1 : 0;
+        while (i < n && regex.charAt(i) == '(') {
+            final int close = closing(regex, i);
+            if (close == -1 || isOptional(regex, close + 1)) {
+                return;
+            }
+            if (regex.startsWith("(?:", i)) {
+                i += 3;
+            } else if (regex.startsWith("(?", i)) {
+                return;
+            } else {
+                i++;
+            }
+        }
+        final var prefix = new StringBuilder();
+        while (i < n && META.indexOf(regex.charAt(i)) == -1) {
+            if (i + 1 < n && "?*{".indexOf(regex.charAt(i + 1)) >= 0) {
+                break;
+            }
+            prefix.append(regex.charAt(i));
+            if (i + 1 < n && regex.charAt(i + 1) == '+') {
+                break;
+            }
+            i++;
+        }
+        if (prefix.length() > 0) {
+            prefixes[index] = prefix.toString();
+            return;
+        }
+        if (i + 1 < n && regex.charAt(i) == '\\' && !isOptional(regex, i + 2)) {
+            switch (regex.charAt(i + 1)) {
+                case 'd':
+                    firstClasses[index] = DIGIT;
+                    break;
+                case 's':
+                    firstClasses[index] = SPACE;
+                    break;
+                case 'w':
+                    firstClasses[index] = WORD;
+                    break;
+                default:
+            }
+        }
+    }
+
+    private static boolean isOptional(String regex, int i) {
+        return i < regex.length() && "?*{".indexOf(regex.charAt(i)) >= 0;
+    }
+
+    /**
+     * @return the index of the {@code )} that closes the group opened at the index {@code open} or -1 if it cannot
+     * be found
+     */
+    private static int closing(String regex, int open) {
+        int depth = 0;
+        for (int i = open; i < regex.length(); i++) {
+            switch (regex.charAt(i)) {
+                case '\\':
+                    i++;
+                    break;
+                case '[':
+                    i = closingBracket(regex, i);
+                    if (i == -1) {
+                        return -1;
+                    }
+                    break;
+                case '(':
+                    depth++;
+                    break;
+                case ')':
+                    if (--depth == 0) {
+                        return i;
+                    }
+                    break;
+                default:
+            }
+        }
+        return -1;
+    }
+
+    private static int closingBracket(String regex, int open) {
+        int i = open + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        for (; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                i = closingBracket(regex, i);
+                if (i == -1) {
+                    return -1;
+                }
+            } else if (c == ']') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
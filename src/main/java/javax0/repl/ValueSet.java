@@ -0,0 +1,198 @@
+package javax0.repl;
+
+import java.util.*;
+
+/**
+ * An immutable set of names that is compiled to resolve any unambiguous prefix of the names in constant time.
+ * <p>
+ * The set contains a hash table that has an entry for every prefix of every name (ignoring the character case). The
+ * entry tells which name the prefix stands for or that the prefix is ambiguous. Resolving a prefix is a single hash
+ * lookup and it does not need to create a new string, the prefix can be a part of the line.
+ * <p>
+ * The command definitions compile the parameter names into a value set when they are built. Commands can also create
+ * value sets for the possible values of the parameters calling {@link #of(String...)} only once, for example in a
+ * {@code static final} field, and pass it to {@link ParameterParser#get(String, Set)}, or they can register the
+ * value set for the parameter calling {@code values()} in the command definition.
+ */
+public final class ValueSet extends AbstractSet<String> {
+    private static final int AMBIGUOUS = -1;
+    private final String[] names;
+    private final String[] prefixes;
+    private final int[] targets;
+    private final int mask;
+
+    private ValueSet(String[] names) {
+        this.names = names;
+        int entries = 1;
+        for (final var name : names) {
+            entries += name.length();
+        }
+        final int capacity = Integer.highestOneBit(entries * 2 - 1) << 1;
+        prefixes = new String[capacity];
+        targets = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < names.length; i++) {
+            final var lower = lowerCase(names[i]);
+            for (int j = 0; j <= lower.length(); j++) {
+                put(lower.substring(0, j), i);
+            }
+        }
+    }
+
+    /**
+     * Compile the names into a value set.
+     *
+     * @param names the names that the set contains
+     * @return the new value set
+     * @throws IllegalArgumentException if a name is the prefix of another name ignoring the character case. Such a
+     *                                  name could never be selected unambiguously.
+     */
+    public static ValueSet of(String... names) {
+        return of(Arrays.asList(names));
+    }
+
+    /**
+     * The same as {@link #of(String...)} but the names are given in a collection. If the collection is already a
+     * value set it is returned.
+     *
+     * @param names the names that the set contains
+     * @return the new value set
+     */
+    public static ValueSet of(Collection<String> names) {
+        if (names instanceof ValueSet) {
+            return (ValueSet) names;
+        }
+        final var set = new ValueSet(new LinkedHashSet<>(names).toArray(String[]::new));
+        set.assertNoHiddenNames();
+        return set;
+    }
+
+    private void assertNoHiddenNames() {
+        for (final var name : names) {
+            final int i = slot(name, 0, name.length());
+            if (targets[i] == AMBIGUOUS) {
+                throw new IllegalArgumentException("'" + name + "' can never be selected, because " +
+                    "it is ambiguous. It matches " + String.join(",", matching(name)) + ".");
+            }
+        }
+    }
+
+    private static String lowerCase(String s) {
+        final var sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            sb.append(Character.toLowerCase(s.charAt(i)));
+        }
+        return sb.toString();
+    }
+
+    private static int hash(CharSequence s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + Character.toLowerCase(s.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private void put(String prefix, int target) {
+        int i = hash(prefix, 0, prefix.length()) & mask;
+        while (prefixes[i] != null) {
+            if (prefixes[i].equals(prefix)) {
+                if (targets[i] != target) {
+                    targets[i] = AMBIGUOUS;
+                }
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        prefixes[i] = prefix;
+        targets[i] = target;
+    }
+
+    /**
+     * @return the index of the table slot that belongs to the prefix or -1 if the prefix is not in the table
+     */
+    private int slot(CharSequence s, int start, int end) {
+        final int length = end - start;
+        int i = hash(s, start, end) & mask;
+        while (prefixes[i] != null) {
+            if (prefixes[i].length() == length && sameLowerCase(prefixes[i], s, start, length)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static boolean sameLowerCase(String lower, CharSequence s, int start, int length) {
+        for (int j = 0; j < length; j++) {
+            if (lower.charAt(j) != Character.toLowerCase(s.charAt(start + j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<String> matching(String prefix) {
+        final var lower = lowerCase(prefix);
+        final var found = new ArrayList<String>();
+        for (final var name : names) {
+            if (lowerCase(name).startsWith(lower)) {
+                found.add(name);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Resolve the prefix to the name it stands for.
+     *
+     * @param prefix the prefix of a name in any character case
+     * @return the name as it was given when the set was created
+     * @throws IllegalArgumentException if the prefix is not a prefix of any name or if it is ambiguous
+     */
+    public String resolve(String prefix) {
+        return resolve(prefix, 0, prefix.length());
+    }
+
+    /**
+     * Resolve the part of a character sequence between {@code start} (inclusive) and {@code end} (exclusive) the
+     * same way as {@link #resolve(String)}.
+     *
+     * @param s     the character sequence that contains the prefix
+     * @param start the start of the prefix
+     * @param end   the end of the prefix
+     * @return the name as it was given when the set was created
+     */
+    public String resolve(CharSequence s, int start, int end) {
+        final int i = slot(s, start, end);
+        if (i == -1) {
+            throw new IllegalArgumentException(s.subSequence(start, end) + " is not an allowed parameter");
+        }
+        if (targets[i] == AMBIGUOUS) {
+            final var prefix = s.subSequence(start, end).toString();
+            throw new IllegalArgumentException("Parameter " + prefix + " is ambiguous. " +
+                "It matches " + String.join(",", matching(prefix)) + ".");
+        }
+        return names[targets[i]];
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        final var s = (String) o;
+        final int i = slot(s, 0, s.length());
+        return i != -1 && targets[i] != AMBIGUOUS && names[targets[i]].equals(s);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return List.of(names).iterator();
+    }
+
+    @Override
+    public int size() {
+        return names.length;
+    }
+}
@@ -0,0 +1,249 @@
+package javax0.repl;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execution of a command on a separate thread, so that the command can be cancelled.
+ * <p>
+ * The calling thread waits until the command finishes, the timeout of the command is over or the user presses Ctrl-C.
+ * In the latter two cases the command is cancelled: the flag returned by {@link CommandEnvironment#cancelled()} is
+ * set and the thread executing the command is interrupted. The calling thread waits a short time for the command to
+ * stop. If it does not stop the calling thread returns anyway and the command is left running on its own thread.
+ * <p>
+ * The command gets its own environment with its own {@link Message} object and a console that writes to the console
+ * of the calling environment. The messages are added to the messages of the calling environment when the command has
+ * finished. When the command is left running its console is detached: the output it prints later is dropped and
+ * its messages are never added, so it cannot interfere with the commands executed after it.
+ */
+class Worker {
+    // the time to wait for the command to stop after it was cancelled
+    private static final long GRACE_MILLIS = 1000;
+    private static final ExecutorService pool = Executors.newCachedThreadPool(r -> {
+        final var thread = new Thread(r, "repl-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ReplCommandEnvironment env;
+    // the environment the command runs in
+    private final RunEnvironment runEnv;
+    private final DetachableConsole console;
+    private final CommandDefinition comDef;
+    private final CountDownLatch done = new CountDownLatch(1);
+    // counted down when the command has finished or when it was cancelled
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile Throwable failure;
+    private Future<?> future;
+
+    private Worker(ReplCommandEnvironment env, CommandDefinition comDef) {
+        this.env = env;
+        this.comDef = comDef;
+        console = new DetachableConsole(env.console);
+        runEnv = new RunEnvironment(env);
+        runEnv.console = console;
+        runEnv.message = new Message();
+        runEnv.message.command(comDef.keyword.startsWith("*") ? comDef.keyword.substring(1) : comDef.keyword);
+    }
+
+    /**
+     * The environment of the command running on the worker thread. It is a copy of the calling environment except the
+     * console and the message, and it is cancelled when the calling environment is cancelled.
+     */
+    private static class RunEnvironment extends ReplCommandEnvironment {
+        private final ReplCommandEnvironment caller;
+
+        private RunEnvironment(ReplCommandEnvironment caller) {
+            super(caller.repl);
+            this.caller = caller;
+            parser = caller.parser;
+            keyword = caller.keyword;
+            line = caller.line;
+            matcher = caller.matcher;
+            matcherId = caller.matcherId;
+            input = caller.input;
+            interruptible = caller.interruptible;
+        }
+
+        @Override
+        public boolean cancelled() {
+            return cancelled || caller.cancelled;
+        }
+    }
+
+    /**
+     * A console that writes to another console until it is detached. After that the output is dropped and the
+     * console cannot be read.
+     */
+    static class DetachableConsole implements LocalConsole {
+        private final LocalConsole console;
+        private final PrintWriter writer;
+        // held while writing to the underlying console
+        private final Object lock = new Object();
+        private volatile boolean detached;
+
+        DetachableConsole(LocalConsole console) {
+            this.console = console;
+            this.writer = new PrintWriter(new Writer(lock) {
+                @Override
+                public void write(char[] cbuf, int off, int len) {
+                    synchronized (lock) {
+                        if (!detached) {
+                            console.writer().write(cbuf, off, len);
+                        }
+                    }
+                }
+
+                @Override
+                public void write(String str, int off, int len) {
+                    synchronized (lock) {
+                        if (!detached) {
+                            console.writer().write(str, off, len);
+                        }
+                    }
+                }
+
+                @Override
+                public void flush() {
+                    synchronized (lock) {
+                        if (!detached) {
+                            console.writer().flush();
+                        }
+                    }
+                }
+
+                @Override
+                public void close() {
+                    flush();
+                }
+            });
+        }
+
+        /**
+         * Stop writing to the underlying console. When this method returns the command does not write to the
+         * underlying console any more.
+         */
+        void detach() {
+            synchronized (lock) {
+                detached = true;
+            }
+        }
+
+        @Override
+        public String readLine(String msg) {
+            return detached ? null : console.readLine(msg);
+        }
+
+        @Override
+        public PrintWriter writer() {
+            return writer;
+        }
+
+        @Override
+        public void onInterrupt(Runnable action) {
+            if (!detached) {
+                console.onInterrupt(action);
+            }
+        }
+
+        @Override
+        public int height() {
+            return console.height();
+        }
+    }
+
+    /**
+     * Execute the command. The command is executed on the calling thread if it has no timeout and cannot be
+     * interrupted by the user.
+     *
+     * @param env    the environment of the command
+     * @param comDef the command
+     */
+    static void execute(ReplCommandEnvironment env, CommandDefinition comDef) {
+        if (comDef.timeout == null && !env.interruptible) {
+            comDef.executor.accept(env);
+        } else {
+            new Worker(env, comDef).execute();
+        }
+    }
+
+    private void execute() {
+        future = pool.submit(() -> {
+            try {
+                comDef.executor.accept(runEnv);
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                done.countDown();
+                stopped.countDown();
+            }
+        });
+        if (env.interruptible) {
+            env.console.onInterrupt(stopped::countDown);
+        }
+        var timedOut = false;
+        try {
+            if (comDef.timeout == null) {
+                stopped.await();
+            } else {
+                timedOut = !stopped.await(comDef.timeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (env.interruptible) {
+                env.console.onInterrupt(null);
+            }
+        }
+        if (done.getCount() == 0) {
+            env.message.addAll(runEnv.message);
+            rethrow();
+            return;
+        }
+        cancel();
+        if (timedOut) {
+            env.message.error("Command '" + comDef.keyword.replace("*", "") + "' was cancelled after " +
+                comDef.timeout.toMillis() + "ms");
+        } else {
+            env.message.error("Command '" + comDef.keyword.replace("*", "") + "' was cancelled");
+        }
+        if (awaitDone()) {
+            env.message.addAll(runEnv.message);
+        } else {
+            console.detach();
+            env.message.warning("The command did not stop, its output and messages are dropped from now on");
+        }
+    }
+
+    private void cancel() {
+        env.cancelled = true;
+        future.cancel(true);
+    }
+
+    private boolean awaitDone() {
+        try {
+            return done.await(GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void rethrow() {
+        final var t = failure;
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t != null) {
+            throw new RuntimeException(t);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static javax0.repl.CommandDefinitionBuilder.start;
+
+class BenchTest {
+
+    private static String run(String in, AtomicInteger calls) {
+        final var out = new ByteArrayOutputStream();
+        new Repl()
+            .command(start().kw("add").parameters(ValueSet.of("step")).usage("add step=n").help("")
+                .executor(env -> {
+                    calls.addAndGet(env.parser().getInt("step", 1));
+                    env.console().writer().print("added\n");
+                }))
+            .command(start().kw("fail").usage("fail").help("")
+                .executor(env -> {
+                    calls.incrementAndGet();
+                    env.message().error("failed");
+                }))
+            .console(new StreamConsole(new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8)), out))
+            .run();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("the command is executed the warmup and the measured times, its output is discarded")
+    void testBench() {
+        final var calls = new AtomicInteger();
+        final var output = run("bench 100/5 ad step=2\n", calls);
+        Assertions.assertEquals(210, calls.get());
+        Assertions.assertFalse(output.contains("added"), output);
+        Assertions.assertTrue(output.contains("100 calls  min "), output);
+        Assertions.assertTrue(output.contains(" ops/sec"), output);
+    }
+
+    @Test
+    @DisplayName("the benchmark stops at the first error and the lines that cannot be executed are not measured")
+    void testErrors() {
+        final var calls = new AtomicInteger();
+        final var output = run("bench 100 fail\nbench 10 nosuch\nbench 10 bench 10 add\n", calls);
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertTrue(output.contains("[ERROR] failed\n"), output);
+        Assertions.assertTrue(output.contains("[ERROR] command 'nosuch' is not defined\n"), output);
+        Assertions.assertTrue(output.contains("[ERROR] The built-in command 'bench' cannot be measured\n"), output);
+        Assertions.assertFalse(output.contains(" calls "), output);
+    }
+}
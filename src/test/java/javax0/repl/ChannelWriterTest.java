@@ -0,0 +1,57 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+class ChannelWriterTest {
+
+    @Test
+    @DisplayName("the characters are written in UTF-8 also when a character is split between two writes")
+    void testEncoding() throws IOException {
+        final var file = Files.createTempFile("output", ".txt");
+        try {
+            final var expected = new StringBuilder();
+            try (final var sut = new ChannelWriter(file, false)) {
+                for (int i = 0; i < 100_000; i++) {
+                    final var s = "line " + i + " árvíz 😀\n";
+                    // the two halves of the emoji are written separately
+                    final int half = s.length() - 2;
+                    sut.write(s, 0, half);
+                    sut.write(s.toCharArray(), half, 1);
+                    sut.write(s.charAt(s.length() - 1));
+                    expected.append(s);
+                }
+                sut.flush();
+                Assertions.assertTrue(Files.size(file) > 0);
+            }
+            Assertions.assertEquals(expected.toString(), Files.readString(file, StandardCharsets.UTF_8));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("the file is truncated or appended to and it cannot be written after it was closed")
+    void testAppend() throws IOException {
+        final var file = Files.createTempFile("output", ".txt");
+        try {
+            Files.writeString(file, "old content\n");
+            try (final var sut = new ChannelWriter(file, false)) {
+                sut.write("first\n");
+            }
+            final var sut = new ChannelWriter(file, true);
+            sut.write("second\n");
+            sut.close();
+            sut.close();
+            Assertions.assertThrows(IOException.class, () -> sut.write("third\n"));
+            Assertions.assertEquals("first\nsecond\n", Files.readString(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
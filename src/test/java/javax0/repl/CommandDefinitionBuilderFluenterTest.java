@@ -28,7 +28,11 @@ public class CommandDefinitionBuilderFluenterTest {
         return klass
             .one("kw")
             .optional(klass.oneOf(klass.one("noParameters"), klass.one("parameters"), klass.oneOrMore("parameter")))
+            .zeroOrMore("values")
+            .zeroOrMore("completion")
             .zeroOrMore("regex")
+            .optional("threadSafe")
+            .optional("timeout")
             .one("usage")
             .one("help")
             .one("executor").name("CommandDefinitionBuilderReady")
@@ -0,0 +1,67 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+class CommandIndexTest {
+
+    private static CommandDefinition def(String keyword) {
+        return new CommandDefinition(keyword, Set.of(), null, null, null, null);
+    }
+
+    @Test
+    @DisplayName("unique abbreviations resolve, ambiguous and unknown keywords do not")
+    void testAbbreviations() {
+        final var echo = def("echo");
+        final var exec = def("execute");
+        final var sut = CommandIndex.EMPTY.with(echo).with(exec).with(def("return"));
+        Assertions.assertSame(echo, sut.find("ec"));
+        Assertions.assertSame(echo, sut.find("ECHO"));
+        Assertions.assertSame(exec, sut.find("ex"));
+        Assertions.assertSame(CommandIndex.AMBIGUOUS, sut.find("e"));
+        Assertions.assertNull(sut.find("echoes"));
+        Assertions.assertNull(sut.find("x"));
+    }
+
+    @Test
+    @DisplayName("keywords starting with '*' match only when typed in full")
+    void testStarKeywords() {
+        final var exit = def("*exit");
+        final var sut = CommandIndex.EMPTY.with(exit).with(def("echo"));
+        Assertions.assertSame(exit, sut.find("exit"));
+        Assertions.assertSame(exit, sut.find("EXIT"));
+        Assertions.assertNull(sut.find("exi"));
+        Assertions.assertSame(exit, sut.get("*exit"));
+        Assertions.assertNull(sut.get("exit"));
+    }
+
+    @Test
+    @DisplayName("a new definition replaces the old one with the same keyword and leaves the old index intact")
+    void testReplace() {
+        final var first = def("echo");
+        final var second = def("Echo");
+        final var old = CommandIndex.EMPTY.with(first).with(def("return"));
+        final var sut = old.with(second);
+        Assertions.assertSame(second, sut.find("e"));
+        Assertions.assertSame(second, sut.get("echo"));
+        Assertions.assertSame(first, old.find("e"));
+    }
+
+    @Test
+    @DisplayName("a definition replaces the one with the same keyword with or without the leading '*'")
+    void testReplaceStar() {
+        final var builtIn = def("*wait");
+        final var application = def("wait");
+        final var sut = CommandIndex.EMPTY.with(builtIn).with(def("walk")).with(application);
+        Assertions.assertSame(application, sut.find("wait"));
+        Assertions.assertSame(application, sut.find("wai"));
+        Assertions.assertNull(sut.get("*wait"));
+        final var again = sut.with(builtIn);
+        Assertions.assertSame(builtIn, again.find("wait"));
+        Assertions.assertNull(again.get("wait"));
+        Assertions.assertSame(again.get("walk"), again.find("wa"));
+    }
+}
@@ -0,0 +1,90 @@
+package javax0.repl;
+
+import javax0.repl.CommandDefinitionBuilder.CommandDefinitionBuilderReady;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static javax0.repl.CommandDefinitionBuilder.start;
+
+class CommandProviderTest {
+
+    public static class TestProvider implements CommandProvider {
+        static final AtomicInteger definitions = new AtomicInteger();
+
+        @Override
+        public Collection<CommandDeclaration> declarations() {
+            return List.of(
+                CommandDeclaration.of("greet", "greet name", "Say hello"),
+                CommandDeclaration.of("count", "count", "Count the definitions"));
+        }
+
+        @Override
+        public CommandDefinitionBuilderReady definition(String keyword) {
+            definitions.incrementAndGet();
+            if (keyword.equals("greet")) {
+                return start().kw("greet").parameters(ValueSet.of("name")).usage("greet name=x").help("")
+                    .executor(env -> env.console().writer().print("hello " + env.parser().get("name").orElse("") + "\n"));
+            }
+            return start().kw("count").usage("").help("")
+                .executor(env -> env.console().writer().print(definitions.get() + "\n"));
+        }
+    }
+
+    @Test
+    @DisplayName("the commands of the providers are defined when they are first executed")
+    void testLazyDefinition() {
+        TestProvider.definitions.set(0);
+        final var in = "help greet\ngr n=world\ngreet name=again\ncount\n";
+        final var out = new ByteArrayOutputStream();
+        new Repl().providers()
+            .console(new StreamConsole(new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8)), out))
+            .run();
+        final var output = out.toString(StandardCharsets.UTF_8);
+        Assertions.assertTrue(output.contains("greet name\nSay hello\n"), output);
+        Assertions.assertTrue(output.contains("hello world\n"), output);
+        Assertions.assertTrue(output.contains("hello again\n"), output);
+        Assertions.assertTrue(output.contains("$ 2\n"), output);
+    }
+
+    @Test
+    @DisplayName("the script cache does not define the commands that the script does not use")
+    void testScriptCache() throws IOException {
+        TestProvider.definitions.set(0);
+        final var directory = Files.createTempDirectory("scripts");
+        final var script = directory.resolve("script.repl");
+        try {
+            Files.writeString(script, "greet name=cached\n");
+            final var in = ". " + script + "\n. " + script + "\n";
+            final var out = new ByteArrayOutputStream();
+            new Repl().provider(new TestProvider())
+                .scriptCache(directory.resolve("cache").toString())
+                .console(new StreamConsole(new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8)), out))
+                .run();
+            final var output = out.toString(StandardCharsets.UTF_8);
+            Assertions.assertEquals(2, output.split("hello cached\n", -1).length - 1, output);
+            Assertions.assertEquals(1, TestProvider.definitions.get());
+            // the fingerprint did not change when the command got defined, the second execution used the cache
+            Assertions.assertEquals(1, directory.resolve("cache").toFile().list().length);
+        } finally {
+            final var cache = directory.resolve("cache").toFile().listFiles();
+            if (cache != null) {
+                for (final var file : cache) {
+                    Files.delete(file.toPath());
+                }
+            }
+            Files.delete(directory.resolve("cache"));
+            Files.delete(script);
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static javax0.repl.CommandDefinitionBuilder.start;
+
+class CommandStatsTest {
+
+    @Test
+    @DisplayName("the percentiles are the upper bounds of the buckets and never more than the maximum")
+    void testPercentiles() {
+        final var sut = new CommandStats();
+        for (int i = 0; i < 98; i++) {
+            sut.record(CommandStats.Phase.EXECUTE, 1_000);
+            sut.invoked(true);
+        }
+        sut.record(CommandStats.Phase.EXECUTE, 5_000_000);
+        sut.invoked(false);
+        sut.record(CommandStats.Phase.EXECUTE, 4_500_000);
+        sut.invoked(false);
+        sut.record(CommandStats.Phase.PARSE, 3);
+        final var output = new StringWriter();
+        Assertions.assertTrue(sut.printAndReset("load", new PrintWriter(output)));
+        Assertions.assertEquals("load: 100 invocations, 2 errors\n" +
+            "  parse    p50       3ns  p99       3ns  max       3ns\n" +
+            "  execute  p50     1.0us  p99     4.7ms  max     5.0ms\n", output.toString());
+        Assertions.assertFalse(sut.printAndReset("load", new PrintWriter(new StringWriter())));
+    }
+
+    @Test
+    @DisplayName("the times are printed in the unit that fits them")
+    void testFormat() {
+        Assertions.assertEquals("999ns", CommandStats.format(999));
+        Assertions.assertEquals("1.5us", CommandStats.format(1_500));
+        Assertions.assertEquals("12.3ms", CommandStats.format(12_300_000));
+        Assertions.assertEquals("2.50s", CommandStats.format(2_500_000_000L));
+    }
+
+    @Test
+    @DisplayName("the stats command prints the numbers since the last stats command and it does not take abbreviations")
+    void testStatsCommand() {
+        final var in = "start\ns\nfail\nstats\nstats\n";
+        final var out = new ByteArrayOutputStream();
+        new Repl()
+            .command(start().kw("start").usage("start").help("").executor(env -> {
+            }))
+            .command(start().kw("fail").usage("fail").help("")
+                .executor(env -> env.message().error("failed")))
+            .console(new StreamConsole(new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8)), out))
+            .run();
+        final var output = out.toString(StandardCharsets.UTF_8);
+        final var first = output.substring(output.indexOf("start: "), output.lastIndexOf("stats: "));
+        Assertions.assertTrue(first.startsWith("start: 2 invocations, 0 errors\n  parse "), first);
+        Assertions.assertTrue(first.contains("fail: 1 invocations, 1 errors\n"), first);
+        final var second = output.substring(output.lastIndexOf("stats: "));
+        Assertions.assertTrue(second.startsWith("stats: 1 invocations, 0 errors\n"), second);
+        Assertions.assertFalse(second.contains("start:"), second);
+    }
+}
@@ -0,0 +1,73 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+class CompletionCacheTest {
+
+    private static CommandDefinition command(String parameter, Supplier<Collection<String>> supplier) {
+        return new CommandDefinition("test", null, Map.of(), Map.of(parameter, supplier), null, null, "", "",
+            false, null);
+    }
+
+    @Test
+    @DisplayName("the values are fetched once and served from the cache while they are fresh")
+    void testCache() {
+        final var calls = new AtomicInteger();
+        final var command = command("#0", () -> List.of("a" + calls.incrementAndGet()));
+        final var sut = new CompletionCache(10, Duration.ofMinutes(1), Duration.ofSeconds(1), Duration.ofSeconds(1));
+        Assertions.assertEquals(List.of("a1"), sut.get(command, "#0"));
+        Assertions.assertEquals(List.of("a1"), sut.get(command, "#0"));
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(List.of(), sut.get(command, "other"));
+    }
+
+    @Test
+    @DisplayName("stale values are returned immediately and refreshed in the background")
+    void testRefresh() throws InterruptedException {
+        final var calls = new AtomicInteger();
+        final var command = command("key", () -> List.of("v" + calls.incrementAndGet()));
+        final var sut = new CompletionCache(10, Duration.ofMillis(200), Duration.ofSeconds(1), Duration.ofSeconds(1));
+        Assertions.assertEquals(List.of("v1"), sut.get(command, "key"));
+        Assertions.assertEquals(List.of("v1"), sut.get(command, "key"));
+        Assertions.assertEquals(1, calls.get());
+        Thread.sleep(250);
+        // stale values are returned while the new ones are fetched
+        var values = sut.get(command, "key");
+        Assertions.assertEquals(List.of("v1"), values);
+        for (int i = 0; i < 100 && values.equals(List.of("v1")); i++) {
+            Thread.sleep(10);
+            values = sut.get(command, "key");
+        }
+        Assertions.assertEquals(List.of("v2"), values);
+    }
+
+    @Test
+    @DisplayName("a supplier running longer than its budget is cancelled")
+    void testBudget() throws InterruptedException {
+        final var interrupted = new AtomicInteger();
+        final var command = command("key", () -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+            }
+            return List.of("late");
+        });
+        final var sut = new CompletionCache(10, Duration.ofMinutes(1), Duration.ofMillis(50), Duration.ofMillis(10));
+        Assertions.assertEquals(List.of(), sut.get(command, "key"));
+        for (int i = 0; i < 100 && interrupted.get() == 0; i++) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(1, interrupted.get());
+        Assertions.assertEquals(List.of(), sut.get(command, "key"));
+    }
+}
@@ -0,0 +1,43 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class CompletionIndexTest {
+
+    private static List<String> collect(CompletionIndex sut, String prefix) {
+        final var words = new ArrayList<String>();
+        sut.collect(prefix, words::add);
+        return words;
+    }
+
+    @Test
+    @DisplayName("the words starting with the prefix are collected in any character case")
+    void testCollect() {
+        final var sut = new CompletionIndex();
+        sut.add("echo");
+        sut.add("exit");
+        sut.add("Export");
+        sut.add("help");
+        sut.add("echo");
+        Assertions.assertEquals(List.of("echo", "exit", "Export"), collect(sut, "e"));
+        Assertions.assertEquals(List.of("exit", "Export"), collect(sut, "EX"));
+        Assertions.assertEquals(List.of("echo", "exit", "Export", "help"), collect(sut, ""));
+        Assertions.assertEquals(List.of(), collect(sut, "x"));
+    }
+
+    @Test
+    @DisplayName("removed words are not collected")
+    void testRemove() {
+        final var sut = new CompletionIndex();
+        sut.add("echo");
+        sut.add("ec");
+        sut.remove("echo");
+        sut.remove("nothing");
+        Assertions.assertEquals(List.of("ec"), collect(sut, "e"));
+    }
+}
@@ -0,0 +1,118 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static javax0.repl.CommandDefinitionBuilder.start;
+
+class EvalTest {
+
+    private static Repl repl() {
+        return new Repl()
+            .command(start().kw("echo").parameters(ValueSet.of("times")).usage("echo text").help("")
+                .executor(env -> {
+                    for (int i = env.parser().getInt("times", 1); i > 0; i--) {
+                        env.console().writer().print(env.parser().get(0).orElse("") + "\n");
+                    }
+                    env.message().info("echoed");
+                }))
+            .command(start().kw("abs")
+                .regex("canonical", "(\\d+)\\s*\\+(\\d+)i")
+                .regex("polar", "(\\d+)\\((\\d+\\.?\\d*)\\)")
+                .usage("abs complexnumber").help("")
+                .executor(env -> env.console().writer().print(env.matcher().group(1))))
+            .command(start().kw("fail").usage("fail").help("")
+                .executor(env -> {
+                    throw new IllegalStateException("broken");
+                }))
+            .command(start().kw("sleep")
+                .timeout(Duration.ofMillis(50))
+                .usage("sleep").help("")
+                .executor(env -> {
+                    while (!env.cancelled()) {
+                        Thread.onSpinWait();
+                    }
+                }))
+            .alias("say", "echo");
+    }
+
+    @Test
+    @DisplayName("the result contains the status, the command, the output, the messages and the matched syntax")
+    void testResult() {
+        final var sut = repl();
+        final var echo = sut.eval("say 'a | b > c' times=2");
+        Assertions.assertTrue(echo.ok());
+        Assertions.assertEquals("echo", echo.command());
+        Assertions.assertEquals("a | b > c\na | b > c\n", echo.output());
+        Assertions.assertEquals(1, echo.messages().size());
+        Assertions.assertEquals("echoed", echo.messages().get(0).text());
+        Assertions.assertEquals("echo", echo.messages().get(0).command());
+
+        final var abs = sut.eval("abs 3(1.5)");
+        Assertions.assertEquals(Result.Status.OK, abs.status());
+        Assertions.assertEquals("polar", abs.matcherId());
+        Assertions.assertEquals("3", abs.output());
+
+        Assertions.assertEquals(Result.Status.INVALID, sut.eval("abs x").status());
+        Assertions.assertEquals(Result.Status.INVALID, sut.eval("echo nosuch=1").status());
+        Assertions.assertEquals(Result.Status.FAILED, sut.eval("fail").status());
+        Assertions.assertEquals("java.lang.IllegalStateException: broken", sut.eval("fail").messages().get(0).text());
+        Assertions.assertEquals(Result.Status.CANCELLED, sut.eval("sleep").status());
+        Assertions.assertEquals(Result.Status.NOT_FOUND, sut.eval("nosuch").status());
+        Assertions.assertEquals(Result.Status.NOT_FOUND, sut.eval("  ").status());
+        Assertions.assertEquals(Result.Status.NOT_FOUND, sut.eval("help").status());
+        // the messages of the earlier lines are not in the result
+        Assertions.assertEquals(1, sut.eval("echo").messages().size());
+    }
+
+    @Test
+    @DisplayName("many threads can evaluate lines at the same time")
+    void testConcurrent() throws InterruptedException, ExecutionException {
+        final var sut = repl();
+        final var pool = Executors.newFixedThreadPool(8);
+        try {
+            final var futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < 8; t++) {
+                final var thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        final var text = thread + "-" + i;
+                        final var result = sut.eval("echo " + text);
+                        Assertions.assertTrue(result.ok());
+                        Assertions.assertEquals(text + "\n", result.output());
+                        Assertions.assertEquals(1, result.messages().size());
+                    }
+                }));
+            }
+            for (final var future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("the alias command without an alias name is reported as an error")
+    void testAliasWithoutName() {
+        final var in = "alias\nalias x echo\nx one\nalias x\nx two\n";
+        final var out = new ByteArrayOutputStream();
+        repl().console(new StreamConsole(new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8)), out)).run();
+        final var output = out.toString(StandardCharsets.UTF_8);
+        Assertions.assertTrue(output.contains("$ [ERROR] There is no alias name, use 'alias myalias command'\n$ "),
+            output);
+        Assertions.assertFalse(output.contains("[EXCEPTION]"), output);
+        Assertions.assertTrue(output.contains("one\n[INFO] echoed\n"), output);
+        Assertions.assertTrue(output.contains("[ERROR] command 'x' is not defined\n"), output);
+    }
+}
@@ -0,0 +1,80 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+class HistoryStoreTest {
+
+    @Test
+    @DisplayName("a line typed again is moved to the end and the oldest lines are dropped over the limit")
+    void testDedupAndLimit() throws IOException {
+        final var sut = new HistoryStore(3);
+        for (final var line : List.of("a", "b", "a", "a", "c", "d")) {
+            sut.add(line);
+        }
+        Assertions.assertEquals(List.of("a", "c", "d"), sut.recent(10));
+        Assertions.assertEquals(List.of("c", "d"), sut.recent(2));
+        Assertions.assertEquals(3, sut.size());
+    }
+
+    @Test
+    @DisplayName("the lines containing the text are found, the most recent first")
+    void testSearch() throws IOException {
+        final var sut = new HistoryStore(100);
+        for (int i = 0; i < 50; i++) {
+            sut.add("command" + i + " key=value" + (i % 7));
+        }
+        Assertions.assertEquals(List.of("command48 key=value6", "command41 key=value6"),
+            sut.search("value6", 2));
+        // lines added after the index was built are also found
+        sut.add("command41 key=value6");
+        Assertions.assertEquals(List.of("command41 key=value6", "command48 key=value6", "command34 key=value6"),
+            sut.search("value6", 3));
+        Assertions.assertEquals(List.of(), sut.search("nothing", 3));
+        Assertions.assertEquals(List.of("command49 key=value0"), sut.search("49", 3));
+    }
+
+    @Test
+    @DisplayName("the history is loaded from the file, compacted and a partially written record is dropped")
+    void testFile() throws IOException {
+        final var file = Files.createTempFile("history", ".bin");
+        Files.delete(file);
+        try {
+            try (final var sut = new HistoryStore(file, 3)) {
+                for (final var line : List.of("a", "b", "c", "b", "d", "e", "f", "g")) {
+                    sut.add(line);
+                }
+            }
+            try (final var sut = new HistoryStore(file, 3)) {
+                Assertions.assertEquals(List.of("e", "f", "g"), sut.recent(10));
+                sut.add("árvíztűrő");
+            }
+            final var size = Files.size(file);
+            Files.write(file, new byte[]{0, 0, 0, 9, 'x'}, StandardOpenOption.APPEND);
+            try (final var sut = new HistoryStore(file, 3)) {
+                Assertions.assertEquals(List.of("f", "g", "árvíztűrő"), sut.recent(10));
+            }
+            Assertions.assertEquals(size, Files.size(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("a file that is not a history file is not loaded")
+    void testNotHistoryFile() throws IOException {
+        final var file = Files.createTempFile("history", ".txt");
+        try {
+            Files.writeString(file, "this is some text");
+            Assertions.assertThrows(IOException.class, () -> new HistoryStore(file, 3));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
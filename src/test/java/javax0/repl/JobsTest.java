@@ -0,0 +1,50 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+
+class JobsTest {
+
+    @Test
+    @DisplayName("the output and the messages of a job are printed when the job is waited for")
+    void testAwait() throws InterruptedException {
+        final var sut = new Jobs();
+        final var env = new ReplCommandEnvironment(new Repl());
+        final var job = sut.start("hello", env, () -> {
+            env.console().writer().print("hello\n");
+            env.message().info("said hello");
+        });
+        final var output = new StringWriter();
+        sut.await(job, new PrintWriter(output));
+        Assertions.assertTrue(output.toString().startsWith("[1] done "), output.toString());
+        Assertions.assertTrue(output.toString().endsWith("hello\nhello\n[INFO] said hello\n"), output.toString());
+        Assertions.assertNull(sut.get(1));
+        Assertions.assertNull(env.console().readLine(""));
+    }
+
+    @Test
+    @DisplayName("killing a job interrupts it")
+    void testKill() throws InterruptedException {
+        final var sut = new Jobs();
+        final var started = new CountDownLatch(1);
+        final var job = sut.start("sleep", new ReplCommandEnvironment(new Repl()), () -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException ignored) {
+            }
+        });
+        started.await();
+        Assertions.assertEquals(1, sut.running());
+        Assertions.assertTrue(sut.kill(job));
+        Assertions.assertEquals(0, sut.running());
+        final var output = new StringWriter();
+        sut.list(new PrintWriter(output));
+        Assertions.assertTrue(output.toString().startsWith("[1] killed "), output.toString());
+    }
+}
@@ -0,0 +1,126 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static javax0.repl.CommandDefinitionBuilder.start;
+
+class JournalTest {
+
+    @Test
+    @DisplayName("the entries are read back in the order they were appended, also after reopening the journal")
+    void testRecordAndRead() throws IOException {
+        final var file = Files.createTempFile("journal", ".bin");
+        Files.delete(file);
+        try {
+            final long start = System.currentTimeMillis();
+            try (final var sut = new Journal(file)) {
+                sut.record("alias", true, "p push");
+                sut.record("push", false, "bad");
+            }
+            try (final var sut = new Journal(file)) {
+                sut.record("*push", true, "árvíztűrő tükörfúrógép");
+            }
+            // an entry that was not written completely
+            Files.write(file, new byte[]{0, 0, 0}, StandardOpenOption.APPEND);
+            final var entries = new ArrayList<Journal.Entry>();
+            Journal.read(file, entries::add);
+            Assertions.assertEquals(3, entries.size());
+            Assertions.assertEquals(List.of("alias", "push", "*push"),
+                List.of(entries.get(0).keyword, entries.get(1).keyword, entries.get(2).keyword));
+            Assertions.assertEquals(List.of("p push", "bad", "árvíztűrő tükörfúrógép"),
+                List.of(entries.get(0).line, entries.get(1).line, entries.get(2).line));
+            Assertions.assertEquals(List.of(true, false, true),
+                List.of(entries.get(0).ok, entries.get(1).ok, entries.get(2).ok));
+            Assertions.assertTrue(entries.get(0).time >= start && entries.get(2).time <= System.currentTimeMillis());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("a file that is not a journal is not read and not appended to")
+    void testNotJournal() throws IOException {
+        final var file = Files.createTempFile("journal", ".txt");
+        try {
+            Files.writeString(file, "push one\n");
+            Assertions.assertThrows(IOException.class, () -> Journal.read(file, entry -> {
+            }));
+            Assertions.assertThrows(IOException.class, () -> new Journal(file));
+            Assertions.assertEquals("push one\n", Files.readString(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("a pipeline is recorded as one entry and the commands get their input when it is replayed")
+    void testPipeline() throws IOException {
+        final var file = Files.createTempFile("journal", ".bin");
+        Files.delete(file);
+        try {
+            final var recorded = new ArrayList<String>();
+            session(recorded, new Repl().journal(file.toString()), "gen n=3 | load\nload\n");
+            Assertions.assertEquals(List.of("line 0", "line 1", "line 2"), recorded);
+            final var entries = new ArrayList<Journal.Entry>();
+            Journal.read(file, entries::add);
+            Assertions.assertEquals(2, entries.size());
+            Assertions.assertEquals(Journal.PIPELINE, entries.get(0).keyword);
+            Assertions.assertEquals("gen n=3 | load", entries.get(0).line);
+            Assertions.assertTrue(entries.get(0).ok);
+            Assertions.assertEquals("load", entries.get(1).keyword);
+            Assertions.assertFalse(entries.get(1).ok);
+
+            final var replayed = new ArrayList<String>();
+            final var output = session(replayed, new Repl().replay(file.toString()), "");
+            Assertions.assertEquals(recorded, replayed);
+            Assertions.assertTrue(output.contains("[INFO] Replayed 1 lines from '" + file + "' in "), output);
+            Assertions.assertTrue(output.contains(" 0 lines with error, 1 failed lines skipped\n"), output);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Run an interactive session with the commands {@code gen}, which prints lines, and {@code load}, which adds the
+     * lines of its input to {@code loaded} and fails if there is nothing to load.
+     */
+    private static String session(List<String> loaded, Repl repl, String input) {
+        final var out = new ByteArrayOutputStream();
+        repl.command(start().kw("gen").parameters(ValueSet.of("n")).usage("gen n=lines").help("")
+                .executor(env -> {
+                    for (int i = 0; i < env.parser().getInt("n", 1); i++) {
+                        env.console().writer().print("line " + i + "\n");
+                    }
+                }))
+            .command(start().kw("load").usage("load").help("")
+                .executor(env -> {
+                    try {
+                        String line;
+                        int n = 0;
+                        while ((line = env.input().readLine()) != null) {
+                            loaded.add(line);
+                            n++;
+                        }
+                        if (n == 0) {
+                            env.message().error("nothing to load");
+                        }
+                    } catch (IOException e) {
+                        env.message().error("" + e);
+                    }
+                }))
+            .console(new StreamConsole(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out))
+            .run();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -4,6 +4,9 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
 class MessageTest {
 
     @Test
@@ -20,4 +23,71 @@ class MessageTest {
                 msg.message());
     }
 
+    @Test
+    @DisplayName("repeated messages are counted and the messages over the capacity are not stored")
+    void testRepeatedAndSuppressed() {
+        final var msg = new Message(2);
+        for (int i = 0; i < 5; i++) {
+            msg.warning("disk is almost full");
+        }
+        msg.info(() -> "loaded");
+        msg.info(() -> {
+            throw new AssertionError("the message over the capacity should not be created");
+        });
+        msg.info("loaded");
+        msg.error("failed");
+        Assertions.assertEquals(1, msg.errorCount());
+        Assertions.assertEquals(5, msg.entries().get(0).count());
+        Assertions.assertEquals(Message.Level.WARNING, msg.entries().get(0).level());
+        Assertions.assertEquals(1, msg.suppressed(Message.Level.INFO));
+        final var sw = new StringWriter();
+        msg.writeTo(new PrintWriter(sw));
+        Assertions.assertEquals(
+                "[ERROR] 1 more error messages were not shown\n" +
+                        "[WARNING] disk is almost full (5 times)\n" +
+                        "[INFO] loaded (2 times)\n" +
+                        "[INFO] 1 more info messages were not shown\n",
+                sw.toString());
+        Assertions.assertEquals("", msg.message());
+        Assertions.assertEquals(0, msg.errorCount());
+        Assertions.assertEquals(0, msg.suppressed(Message.Level.INFO));
+        final var again = new StringWriter();
+        msg.writeTo(new PrintWriter(again));
+        Assertions.assertEquals("", again.toString());
+    }
+
+    @Test
+    @DisplayName("the messages record the command that issued them")
+    void testCommand() {
+        final var msg = new Message();
+        msg.info("started");
+        msg.command("load");
+        msg.info("started");
+        msg.command(null);
+        Assertions.assertEquals(2, msg.entries().size());
+        Assertions.assertNull(msg.entries().get(0).command());
+        Assertions.assertEquals("load", msg.entries().get(1).command());
+    }
+
+    @Test
+    @DisplayName("the messages of another object are added with their command and count")
+    void testAddAll() {
+        final var msg = new Message(2);
+        msg.error("failed");
+        final var other = new Message();
+        other.command("load");
+        other.error("failed");
+        other.error("failed");
+        other.warning("slow");
+        other.info("done");
+        msg.addAll(other);
+        Assertions.assertEquals(3, msg.errorCount());
+        Assertions.assertEquals(2, msg.entries().size());
+        Assertions.assertEquals("load", msg.entries().get(1).command());
+        Assertions.assertEquals(2, msg.entries().get(1).count());
+        Assertions.assertEquals(1, msg.suppressed(Message.Level.WARNING));
+        Assertions.assertEquals(1, msg.suppressed(Message.Level.INFO));
+        Assertions.assertEquals(3, other.entries().size());
+    }
+
 }
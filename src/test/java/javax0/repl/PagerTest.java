@@ -0,0 +1,78 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+
+class PagerTest {
+
+    private static class TestConsole implements LocalConsole {
+        final StringWriter output = new StringWriter();
+        final PrintWriter writer = new PrintWriter(output);
+        final Queue<String> answers;
+        int questions;
+
+        TestConsole(String... answers) {
+            this.answers = new ArrayDeque<>(List.of(answers));
+        }
+
+        @Override
+        public String readLine(String msg) {
+            questions++;
+            return answers.poll();
+        }
+
+        @Override
+        public PrintWriter writer() {
+            return writer;
+        }
+    }
+
+    @Test
+    @DisplayName("output that fits on the screen is written without paging")
+    void testShortOutput() {
+        final var console = new TestConsole();
+        final var sut = new PagingConsole(console, 5);
+        sut.writer().print("1\n2\n3\n");
+        sut.writer().flush();
+        Assertions.assertEquals("1\n2\n3\n", console.output.toString());
+        sut.readLine("$ ");
+        Assertions.assertEquals(1, console.questions);
+    }
+
+    @Test
+    @DisplayName("output longer than the screen is shown page by page")
+    void testPaging() {
+        final var console = new TestConsole("", "q", "");
+        final var sut = new PagingConsole(console, 3);
+        for (int i = 1; i <= 10; i++) {
+            sut.writer().print(i + "\n");
+        }
+        Assertions.assertEquals("1\n2\n3\n", console.output.toString());
+        sut.readLine("$ ");
+        Assertions.assertEquals("1\n2\n3\n4\n5\n", console.output.toString());
+        Assertions.assertEquals(3, console.questions);
+    }
+
+    @Test
+    @DisplayName("output larger than the buffer is spilled to a file and shown in order")
+    void testSpill() {
+        final var console = new TestConsole("a", "");
+        final var sut = new PagingConsole(console, 10);
+        final var expected = new StringBuilder();
+        for (int i = 0; i < Pager.BUFFER_SIZE; i++) {
+            final var line = "line " + i + " 😀\n";
+            expected.append(line);
+            sut.writer().print(line);
+        }
+        sut.readLine("$ ");
+        Assertions.assertEquals(expected.toString(), console.output.toString());
+        Assertions.assertEquals(2, console.questions);
+    }
+}
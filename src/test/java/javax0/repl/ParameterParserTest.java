@@ -44,4 +44,42 @@ class ParameterParserTest {
                         Set.of("key1a", "key2", "key0")));
         Assertions.assertTrue(e.getMessage().contains("Parameter key is ambiguous."), e.getMessage());
     }
+
+    @Test
+    @DisplayName("quoted and escaped values can contain spaces and '=' characters")
+    void testQuoting() {
+        final var sut = ParameterParser.parse("text=\"a b = c\" name='x \\y' plain=a\\ b \"stand alone\" mixed=\"q\"'r' ''",
+                Set.of("text", "name", "plain", "mixed"));
+        Assertions.assertEquals("a b = c", sut.get("text").get());
+        Assertions.assertEquals("x \\y", sut.get("name").get());
+        Assertions.assertEquals("a b", sut.get("plain").get());
+        Assertions.assertEquals("qr", sut.get("mixed").get());
+        Assertions.assertEquals("stand alone", sut.get(0).get());
+        Assertions.assertEquals("", sut.get(1).get());
+        Assertions.assertEquals(2, sut.count());
+    }
+
+    @Test
+    @DisplayName("unterminated quote is an error")
+    void testUnterminatedQuote() {
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+                ParameterParser.parse("text=\"a b", null));
+    }
+
+    @Test
+    @DisplayName("primitive values are parsed from the line")
+    void testPrimitives() {
+        final var sut = ParameterParser.parse("n=42 big=-12345678901 flag=Yes off=no q=\"7\"", null);
+        Assertions.assertEquals(42, sut.getInt("n", 0));
+        Assertions.assertEquals(7, sut.getInt("q", 0));
+        Assertions.assertEquals(13, sut.getInt("missing", 13));
+        Assertions.assertEquals(-12345678901L, sut.getLong("big", 0));
+        Assertions.assertTrue(sut.getBoolean("flag", false));
+        Assertions.assertFalse(sut.getBoolean("off", true));
+        Assertions.assertTrue(sut.has("n"));
+        Assertions.assertFalse(sut.has("N"));
+        Assertions.assertThrows(NumberFormatException.class, () -> sut.getInt("flag", 0));
+        final var e = Assertions.assertThrows(IllegalArgumentException.class, () -> sut.getBoolean("n", false));
+        Assertions.assertEquals("The value of n has to be one of true, yes, on, false, no or off", e.getMessage());
+    }
 }
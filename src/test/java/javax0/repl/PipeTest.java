@@ -0,0 +1,86 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+class PipeTest {
+
+    @Test
+    @DisplayName("the characters are read in the order they were written through the wrapping of the ring buffer")
+    void testTransfer() throws Exception {
+        final var sut = new Pipe(7);
+        final var writer = new Thread(() -> {
+            try (final var w = new PrintWriter(sut.writer)) {
+                for (int i = 0; i < 1000; i++) {
+                    w.print("line " + i + "\n");
+                }
+            }
+        });
+        writer.start();
+        final var reader = new BufferedReader(sut.reader);
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertEquals("line " + i, reader.readLine());
+        }
+        Assertions.assertNull(reader.readLine());
+        writer.join();
+    }
+
+    @Test
+    @DisplayName("the writer waits when the buffer is full and the characters are dropped after the reader was closed")
+    void testBackPressure() throws Exception {
+        final var sut = new Pipe(4);
+        final var written = new AtomicInteger();
+        final var writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 10; i++) {
+                    sut.writer.write("ab");
+                    written.incrementAndGet();
+                }
+                sut.writer.close();
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+        writer.start();
+        while (writer.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        Assertions.assertEquals(2, written.get());
+        final var buffer = new char[3];
+        Assertions.assertEquals(3, sut.reader.read(buffer, 0, 3));
+        Assertions.assertEquals("aba", new String(buffer));
+        sut.reader.close();
+        writer.join(1000);
+        Assertions.assertEquals(10, written.get());
+        Assertions.assertEquals(-1, sut.reader.read(buffer, 0, 3));
+    }
+
+    @Test
+    @DisplayName("the waiting reader stops when its thread is interrupted")
+    void testInterrupt() throws Exception {
+        final var sut = new Pipe();
+        final var failure = new AtomicReference<Throwable>();
+        final var reader = new Thread(() -> {
+            try {
+                sut.reader.read();
+            } catch (IOException e) {
+                failure.set(e);
+            }
+        });
+        reader.start();
+        while (reader.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        reader.interrupt();
+        reader.join(1000);
+        Assertions.assertTrue(failure.get() instanceof InterruptedIOException);
+    }
+}
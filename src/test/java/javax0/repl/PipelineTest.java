@@ -0,0 +1,131 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static javax0.repl.CommandDefinitionBuilder.start;
+
+class PipelineTest {
+
+    @Test
+    @DisplayName("the line is split at the | characters that are not quoted or escaped")
+    void testSplit() {
+        Assertions.assertEquals(List.of("a b"), Pipeline.split("a b"));
+        Assertions.assertEquals(List.of("a", "b c", ""), Pipeline.split("a| b c |"));
+        Assertions.assertEquals(List.of("a x=\"|\\\"|\" y='|'", "b \\|"), Pipeline.split("a x=\"|\\\"|\" y='|' | b \\|"));
+    }
+
+    @Test
+    @DisplayName("the output of a command is the input of the next one and the producer stops when it is not read")
+    void testPipeline() {
+        final var in = "gen n=20 | grep 1 | grep 5\n" +
+            "gen n=1000000000 | head\n" +
+            "grep 1\n" +
+            "gen | nosuch\n" +
+            "gen | alias\n";
+        final var out = new ByteArrayOutputStream();
+        new Repl()
+            .command(start().kw("gen").parameters(ValueSet.of("n")).usage("gen n=lines").help("")
+                .executor(env -> {
+                    final var w = env.console().writer();
+                    final var n = env.parser().getInt("n", 10);
+                    int i = 0;
+                    while (i < n && !env.cancelled()) {
+                        w.print("line " + i++ + "\n");
+                    }
+                    env.message().info("generated " + (i < n ? "some" : "all") + " lines");
+                }))
+            .command(start().kw("grep").usage("grep text").help("")
+                .executor(env -> {
+                    try {
+                        String line;
+                        while ((line = env.input().readLine()) != null) {
+                            if (line.contains(env.line())) {
+                                env.console().writer().print(line + "\n");
+                            }
+                        }
+                    } catch (IOException e) {
+                        env.message().error("" + e);
+                    }
+                }))
+            .command(start().kw("head").usage("head").help("")
+                .executor(env -> {
+                    try {
+                        env.console().writer().print(env.input().readLine() + "\n");
+                    } catch (IOException e) {
+                        env.message().error("" + e);
+                    }
+                }))
+            .console(new StreamConsole(new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8)), out))
+            .run();
+        final var output = out.toString(StandardCharsets.UTF_8);
+        Assertions.assertTrue(output.contains("$ line 15\n[INFO] generated all lines\n$ "), output);
+        Assertions.assertTrue(output.contains("$ line 0\n[INFO] generated some lines\n$ "), output);
+        Assertions.assertTrue(output.contains("[ERROR] command 'nosuch' is not defined\n"), output);
+        Assertions.assertTrue(output.contains("[ERROR] The built-in command 'alias' cannot be used in a pipeline\n"),
+            output);
+    }
+
+    @Test
+    @DisplayName("the output and the messages of a command that does not stop after Ctrl-C are dropped")
+    void testAbandoned() throws InterruptedException {
+        final var started = new CountDownLatch(1);
+        final var finished = new CountDownLatch(1);
+        final var pressed = new AtomicBoolean();
+        final var in = "say hello | spam\nsay after\n";
+        final var out = new ByteArrayOutputStream();
+        final var console = new StreamConsole(new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8)), out) {
+            @Override
+            public void onInterrupt(Runnable action) {
+                if (action != null && !pressed.getAndSet(true)) {
+                    // the user presses Ctrl-C when the command started to print
+                    new Thread(() -> {
+                        try {
+                            started.await();
+                        } catch (InterruptedException ignored) {
+                        }
+                        action.run();
+                    }).start();
+                }
+            }
+        };
+        new Repl()
+            .command(start().kw("say").usage("say text").help("")
+                .executor(env -> env.console().writer().print(env.line() + "\n")))
+            .command(start().kw("spam").usage("spam").help("")
+                .executor(env -> {
+                    // ignores the cancellation and the interrupts for longer than the grace period
+                    final long end = System.nanoTime() + 2_000_000_000L;
+                    while (System.nanoTime() < end) {
+                        env.console().writer().print("spam\n");
+                        env.console().writer().flush();
+                        env.message().error("spam " + System.nanoTime());
+                        started.countDown();
+                        try {
+                            Thread.sleep(10);
+                        } catch (InterruptedException ignored) {
+                        }
+                    }
+                    finished.countDown();
+                }))
+            .console(console)
+            .run();
+        Assertions.assertTrue(finished.await(10, TimeUnit.SECONDS));
+        final var output = out.toString(StandardCharsets.UTF_8);
+        final var warning = "[WARNING] The commands of the pipeline did not stop, their output and messages are " +
+            "dropped from now on\n";
+        Assertions.assertTrue(output.contains("[ERROR] The pipeline was cancelled\n" + warning), output);
+        Assertions.assertFalse(output.contains("[ERROR] spam"), output);
+        Assertions.assertTrue(output.endsWith(warning + "$ after\n$ "), output);
+    }
+}
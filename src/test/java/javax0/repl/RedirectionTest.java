@@ -0,0 +1,62 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static javax0.repl.CommandDefinitionBuilder.start;
+
+class RedirectionTest {
+
+    @Test
+    @DisplayName("the redirection is the end of the line after the first > that is not quoted or escaped")
+    void testOf() {
+        Assertions.assertNull(Redirection.of("say x='>' y=\\> \"z>\""));
+        final var sut = Redirection.of("say hello | upper >> 'my file.txt'");
+        Assertions.assertEquals("say hello | upper", sut.line);
+        Assertions.assertEquals("my file.txt", sut.file);
+        Assertions.assertTrue(sut.append);
+        Assertions.assertNull(sut.error);
+        Assertions.assertFalse(Redirection.of("say>out").append);
+        Assertions.assertEquals("out", Redirection.of("say>out").file);
+        Assertions.assertNotNull(Redirection.of("say > ").error);
+        Assertions.assertNotNull(Redirection.of("say > a > b").error);
+        Assertions.assertNotNull(Redirection.of("say > a | upper").error);
+    }
+
+    @Test
+    @DisplayName("the output of the command goes to the file and the messages to the console")
+    void testRedirect() throws IOException {
+        final var directory = Files.createTempDirectory("redirect");
+        final var file = directory.resolve("out.txt");
+        try {
+            final var in = "say one > " + file + "\n" +
+                "say two >> " + file + "\n" +
+                "say three\n" +
+                "say four > " + directory.resolve("nosuch").resolve("out.txt") + "\n";
+            final var out = new ByteArrayOutputStream();
+            new Repl()
+                .command(start().kw("say").usage("say text").help("")
+                    .executor(env -> {
+                        env.console().writer().print(env.line() + "\n");
+                        env.message().info("said");
+                    }))
+                .console(new StreamConsole(new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8)), out))
+                .run();
+            final var output = out.toString(StandardCharsets.UTF_8);
+            Assertions.assertEquals("one\ntwo\n", Files.readString(file));
+            Assertions.assertFalse(output.contains("one\n"), output);
+            Assertions.assertTrue(output.contains("$ [INFO] said\n$ [INFO] said\n$ three\n[INFO] said\n"), output);
+            Assertions.assertTrue(output.contains("cannot be opened"), output);
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+}
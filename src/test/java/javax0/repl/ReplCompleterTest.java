@@ -0,0 +1,73 @@
+package javax0.repl;
+
+import org.jline.reader.Candidate;
+import org.jline.reader.LineReaderBuilder;
+import org.jline.reader.impl.DefaultParser;
+import org.jline.terminal.TerminalBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static javax0.repl.CommandDefinitionBuilder.start;
+
+class ReplCompleterTest {
+
+    private static List<String> complete(ReplCompleter sut, String line) throws IOException {
+        final var terminal = TerminalBuilder.builder().dumb(true)
+            .streams(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream()).build();
+        final var reader = LineReaderBuilder.builder().terminal(terminal).build();
+        final var candidates = new ArrayList<Candidate>();
+        sut.complete(reader, new DefaultParser().parse(line, line.length()), candidates);
+        final var word = line.substring(line.lastIndexOf(' ') + 1);
+        return candidates.stream().map(Candidate::value).filter(s -> s.startsWith(word)).collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("parameter names and values are completed for abbreviated keywords and aliases")
+    void testParameters() throws IOException {
+        final var output = new CommandDefinition("output", ValueSet.of("format", "file"),
+            Map.of("format", ValueSet.of("json", "xml")), Map.of(), null, null, "", "", false, null);
+        final var sut = ReplCompleter.of(List.of(output), Set.of());
+        Assertions.assertEquals(List.of("output"), complete(sut, "ou"));
+        Assertions.assertEquals(List.of("format=", "file="), complete(sut, "out f"));
+        Assertions.assertEquals(List.of("fo=json"), complete(sut, "out fo=j"));
+        Assertions.assertEquals(List.of("format=xml"), complete(sut, "o format=x"));
+        sut.aliasDefined("o2");
+        Assertions.assertEquals(List.of("o2", "output"), complete(sut, "o"));
+        sut.aliasRemoved("o2");
+        Assertions.assertEquals(List.of("output"), complete(sut, "o"));
+    }
+
+    @Test
+    @DisplayName("the commands and the aliases defined after the completer was created are completed")
+    void testUpdatedInPlace() throws IOException {
+        final var repl = new Repl().command(start().kw("output").parameters(ValueSet.of("format"))
+            .usage("").help("").executor(env -> {
+            }));
+        final var sut = repl.completer();
+        Assertions.assertEquals(List.of(), complete(sut, "l"));
+        repl.command(start().kw("load").parameters(ValueSet.of("file", "lines")).usage("").help("")
+            .executor(env -> {
+            }));
+        repl.alias("ld", "load");
+        Assertions.assertEquals(List.of("ld", "load"), complete(sut, "l"));
+        Assertions.assertEquals(List.of("lines="), complete(sut, "ld li"));
+        repl.alias("ld", null);
+        Assertions.assertEquals(List.of("load"), complete(sut, "l"));
+        // removing an alias that has the same name as a command keeps the command
+        repl.alias("output", "load");
+        repl.alias("output", null);
+        Assertions.assertEquals(List.of("output"), complete(sut, "ou"));
+        Assertions.assertEquals(List.of("format="), complete(sut, "output f"));
+        Assertions.assertSame(sut, repl.completer());
+    }
+}
@@ -0,0 +1,117 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+
+import static javax0.repl.CommandDefinitionBuilder.start;
+
+class ReplServerTest {
+
+    private static String session(int port, String input) {
+        try (final var socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.getOutputStream().write(input.getBytes(StandardCharsets.UTF_8));
+            socket.getOutputStream().flush();
+            return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    @DisplayName("concurrent sessions share the commands but have their own aliases")
+    void testSessions() throws Exception {
+        final var repl = new Repl().command(start().kw("echo")
+            .usage("echo")
+            .help("")
+            .executor(env -> env.message().info("echo " + env.line())));
+        try (final var server = new ReplServer(repl, 0).start()) {
+            final var first = CompletableFuture.supplyAsync(() ->
+                session(server.port(), "alias x echo\nx one\nexit\n"));
+            final var second = CompletableFuture.supplyAsync(() ->
+                session(server.port(), "ec two\nx three\nexit\n"));
+            final var firstOutput = first.get();
+            final var secondOutput = second.get();
+            Assertions.assertTrue(firstOutput.contains("[INFO] echo one"), firstOutput);
+            Assertions.assertTrue(secondOutput.contains("[INFO] echo two"), secondOutput);
+            Assertions.assertTrue(secondOutput.contains("[ERROR] command 'x' is not defined"), secondOutput);
+        }
+    }
+
+    @Test
+    @DisplayName("the sessions can execute shell commands and files only when the server allows them")
+    void testRestricted() throws Exception {
+        final var file = Files.createTempFile("session", ".repl");
+        try {
+            Files.writeString(file, "echo from file\n");
+            final var repl = new Repl().command(start().kw("echo")
+                .usage("echo")
+                .help("")
+                .executor(env -> env.message().info("echo " + env.line())));
+            final var input = "!echo from shell\n. " + file + "\nhelp\nexit\n";
+            try (final var server = new ReplServer(repl, 0).start()) {
+                final var output = session(server.port(), input);
+                Assertions.assertTrue(output.contains("[ERROR] Executing shell commands is not allowed\n"), output);
+                Assertions.assertTrue(output.contains("[ERROR] Executing files is not allowed\n"), output);
+                Assertions.assertFalse(output.contains("from"), output);
+                Assertions.assertFalse(output.contains("! cmd"), output);
+            }
+            try (final var server = new ReplServer(repl, 0).allowShell().allowFiles().start()) {
+                final var output = session(server.port(), input);
+                Assertions.assertTrue(output.contains("[INFO] echo from file\n"), output);
+                Assertions.assertTrue(output.contains("! cmd"), output);
+                if (!System.getProperty("os.name").toLowerCase().startsWith("windows")) {
+                    Assertions.assertTrue(output.contains("from shell\n"), output);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    @DisplayName("the sessions can redirect the output into a file only when the server allows the files")
+    void testRedirectRestricted() throws Exception {
+        final var directory = Files.createTempDirectory("session");
+        final var file = directory.resolve("output.txt");
+        try {
+            final var repl = new Repl().command(start().kw("print")
+                .usage("print")
+                .help("")
+                .executor(env -> env.console().writer().print(env.line() + "\n")));
+            final var input = "print secret > " + file + "\nprint more >> " + file + "\nexit\n";
+            try (final var server = new ReplServer(repl, 0).start()) {
+                final var output = session(server.port(), input);
+                Assertions.assertEquals(2, output.split("\\[ERROR] Writing files is not allowed\n", -1).length - 1,
+                    output);
+                Assertions.assertFalse(Files.exists(file));
+            }
+            try (final var server = new ReplServer(repl, 0).allowFiles().start()) {
+                final var output = session(server.port(), input);
+                Assertions.assertFalse(output.contains("not allowed"), output);
+                Assertions.assertEquals("secret\nmore\n", Files.readString(file));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    @DisplayName("the commands defined after the server was started are not seen by the sessions")
+    void testCommandsCopied() throws Exception {
+        final var repl = new Repl();
+        try (final var server = new ReplServer(repl, 0).start()) {
+            repl.command(start().kw("late").usage("late").help("").executor(env -> env.message().info("late")));
+            final var output = session(server.port(), "late\nexit\n");
+            Assertions.assertTrue(output.contains("[ERROR] command 'late' is not defined"), output);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class ScriptCacheTest {
+
+    private static ScriptCache.Line compile(CommandDefinition command, String keyword, String line) {
+        final var env = new ReplCommandEnvironment(null);
+        env.keyword = keyword;
+        env.line = line;
+        env.parser = ParameterParser.parse(line, command.parameters, command.values);
+        if (command.regexes != null && !command.regexes.match(env)) {
+            env.parser = null;
+        }
+        return ScriptCache.Line.of(keyword + " " + line, env, command);
+    }
+
+    @Test
+    @DisplayName("the compiled lines are saved and loaded with the parsed parameters and the matching regular expression")
+    void testSaveAndLoad() throws IOException {
+        final var directory = Files.createTempDirectory("scripts");
+        try {
+            final var set = new CommandDefinition("set", ValueSet.of("key", "value"),
+                Map.of("key", ValueSet.of("alpha", "beta")), Map.of(), env -> {
+            }, null, "", "", false, null);
+            final var regexes = new LinkedHashMap<String, String>();
+            regexes.put("two", "(\\d+)\\s+(\\d+)");
+            regexes.put("one", "(\\d+)");
+            final var add = new CommandDefinition("add", null, env -> {
+            }, SyntaxMatcher.of(regexes), "", "");
+            final var sut = new ScriptCache(directory);
+            final var file = sut.file("content".getBytes(), "fingerprint");
+            Assertions.assertNull(sut.load(file));
+            sut.save(file, List.of(
+                compile(set, "s", "k=al v=\"a \\\"b\\\"\" árvíz"),
+                compile(add, "add", "7"),
+                compile(add, "add", "x"),
+                ScriptCache.Line.of("nosuch", new ReplCommandEnvironment(null), null)));
+
+            final var lines = sut.load(file);
+            Assertions.assertEquals(4, lines.size());
+            final var first = lines.get(0);
+            Assertions.assertTrue(first.compiled());
+            Assertions.assertEquals("set", first.command);
+            Assertions.assertEquals("s", first.keyword);
+            Assertions.assertEquals("alpha", first.parser.get("key").orElse(null));
+            Assertions.assertEquals("a \"b\"", first.parser.get("value").orElse(null));
+            Assertions.assertEquals("árvíz", first.parser.get(0).orElse(null));
+            Assertions.assertEquals(1, lines.get(1).matcher);
+            final var env = new ReplCommandEnvironment(null);
+            env.line = lines.get(1).rest;
+            Assertions.assertTrue(add.regexes.match(env, lines.get(1).matcher));
+            Assertions.assertEquals("one", env.matcherId);
+            Assertions.assertEquals("7", env.matcher.group(1));
+            Assertions.assertFalse(lines.get(2).compiled());
+            Assertions.assertEquals("add x", lines.get(2).text);
+            Assertions.assertEquals("nosuch", lines.get(3).text);
+        } finally {
+            for (final var file : directory.toFile().listFiles()) {
+                Files.delete(file.toPath());
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    @DisplayName("the compiled script file depends on the content and on the fingerprint")
+    void testFile() throws IOException {
+        final var directory = Files.createTempDirectory("scripts");
+        try {
+            final var sut = new ScriptCache(directory);
+            final var file = sut.file("a".getBytes(), "x");
+            Assertions.assertEquals(file, sut.file("a".getBytes(), "x"));
+            Assertions.assertNotEquals(file, sut.file("b".getBytes(), "x"));
+            Assertions.assertNotEquals(file, sut.file("a".getBytes(), "y"));
+            Assertions.assertEquals(directory, file.getParent());
+        } finally {
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static javax0.repl.CommandDefinitionBuilder.start;
+
+class ScriptTest {
+
+    /**
+     * A console that records what was written to it each time it was flushed.
+     */
+    private static class FlushRecordingConsole implements LocalConsole {
+        final StringBuilder written = new StringBuilder();
+        final List<String> flushed = new ArrayList<>();
+        final PrintWriter writer = new PrintWriter(new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                written.append(cbuf, off, len);
+            }
+
+            @Override
+            public void flush() {
+                flushed.add(written.toString());
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        @Override
+        public String readLine(String msg) {
+            return null;
+        }
+
+        @Override
+        public PrintWriter writer() {
+            return writer;
+        }
+    }
+
+    @Test
+    @DisplayName("batch mode flushes the output after the given number of lines and prints a summary")
+    void testBatch() throws IOException {
+        final var file = Files.createTempFile("batch", ".repl");
+        try {
+            Files.writeString(file, "ok 1\nbad 2\nok 3\n\nnosuch 4\nok 5\nbad 6\nok 7\n");
+            final var console = new FlushRecordingConsole();
+            new Repl()
+                .command(start().kw("ok").usage("ok").help("")
+                    .executor(env -> env.console().writer().print("ok " + env.line() + "\n")))
+                .command(start().kw("bad").usage("bad").help("")
+                    .executor(env -> {
+                        env.message().error("bad " + env.line());
+                        env.message().error("bad " + env.line());
+                    }))
+                .batch(3)
+                .args(new String[]{file.toString()})
+                .console(console)
+                .run();
+            final var output = console.written.toString();
+            Assertions.assertTrue(output.matches("(?s).*\\[INFO] Executed 7 lines in \\d+ ms, \\d+ lines/sec, " +
+                "3 lines with error\n"), output);
+            // the repeated error message of a line is printed only once and it is not printed again after the line
+            Assertions.assertTrue(output.contains("ok 1\n[ERROR] bad 2 (2 times)\nok 3\n" +
+                "[ERROR] command 'nosuch' is not defined\n"), output);
+            Assertions.assertEquals(1, output.split("bad 2", -1).length - 1, output);
+            final var first = console.flushed.get(0);
+            Assertions.assertTrue(first.endsWith("ok 3\n"), first);
+            final var second = console.flushed.get(1);
+            Assertions.assertTrue(second.endsWith("ok 5\n[ERROR] bad 6 (2 times)\n"), second);
+            Assertions.assertEquals(output, console.flushed.get(console.flushed.size() - 1));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * The commands of the parallel tests. The thread safe command {@code late} waits until the {@code early} commands
+     * count down the latch, thus it finishes after the lines that follow it. The command {@code plain} is not thread
+     * safe. Every command adds its line to {@code finished} when it has finished.
+     */
+    private static Repl parallelRepl(CountDownLatch latch, ConcurrentLinkedQueue<String> finished) {
+        return new Repl()
+            .command(start().kw("late").threadSafe().usage("late").help("")
+                .executor(env -> {
+                    await(latch);
+                    env.console().writer().print("late " + env.line() + "\n");
+                    env.message().info("late " + env.line());
+                    finished.add("late " + env.line());
+                }))
+            .command(start().kw("early").threadSafe().usage("early").help("")
+                .executor(env -> {
+                    env.console().writer().print("early " + env.line() + "\n");
+                    env.message().info("early " + env.line());
+                    finished.add("early " + env.line());
+                    latch.countDown();
+                }))
+            .command(start().kw("plain").usage("plain").help("")
+                .executor(env -> {
+                    env.console().writer().print("plain " + env.line() + " after " + String.join(",", finished) + "\n");
+                    finished.add("plain " + env.line());
+                }));
+    }
+
+    /**
+     * Wait for the latch letting the pool start another thread, so the commands that follow can run even when the
+     * pool has only one thread.
+     */
+    private static void await(CountDownLatch latch) {
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    latch.await(10, TimeUnit.SECONDS);
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return latch.getCount() == 0;
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void run(Script script, String... lines) {
+        for (final var line : lines) {
+            script.execute(line);
+        }
+        script.finish();
+    }
+
+    @Test
+    @DisplayName("the output and the messages of the parallel lines are printed in the order of the lines")
+    void testParallelOrder() {
+        final var latch = new CountDownLatch(2);
+        final var finished = new ConcurrentLinkedQueue<String>();
+        final var console = new FlushRecordingConsole();
+        final var script = new Script(parallelRepl(latch, finished), new Message(), console, console.writer(), 0, true);
+        run(script, "late 1", "early 2", "early 3");
+        Assertions.assertEquals("late 1", List.copyOf(finished).get(2));
+        Assertions.assertEquals("late 1\n[INFO] late 1\n" +
+            "early 2\n[INFO] early 2\n" +
+            "early 3\n[INFO] early 3\n", console.written.toString());
+        Assertions.assertEquals(3, script.lines());
+    }
+
+    @Test
+    @DisplayName("a line that is not thread safe is executed after all the parallel lines before it have finished")
+    void testParallelBarrier() {
+        final var latch = new CountDownLatch(1);
+        final var finished = new ConcurrentLinkedQueue<String>();
+        final var console = new FlushRecordingConsole();
+        final var script = new Script(parallelRepl(latch, finished), new Message(), console, console.writer(), 0, true);
+        run(script, "late 1", "early 2", "plain 3", "early 4");
+        final var output = console.written.toString();
+        Assertions.assertEquals("late 1\n[INFO] late 1\n" +
+            "early 2\n[INFO] early 2\n" +
+            "plain 3 after early 2,late 1\n" +
+            "early 4\n[INFO] early 4\n", output);
+    }
+
+    @Test
+    @DisplayName("the parallel lines keep their place in the compiled script")
+    void testParallelCompiled() {
+        final var latch = new CountDownLatch(1);
+        final var finished = new ConcurrentLinkedQueue<String>();
+        final var console = new FlushRecordingConsole();
+        final var script = new Script(parallelRepl(latch, finished), new Message(), console, console.writer(), 0, true);
+        script.compile();
+        run(script, "late 1", "early 2", "nosuch 3", "early 4", "plain 5", "late 6");
+        Assertions.assertEquals("early 2", List.copyOf(finished).get(0));
+        final var compiled = script.compiled();
+        Assertions.assertEquals(List.of("late 1", "early 2", "nosuch 3", "early 4", "plain 5", "late 6"),
+            compiled.stream().map(line -> line.text).collect(Collectors.toList()));
+        Assertions.assertEquals(List.of("late", "early", "", "early", "plain", "late"),
+            compiled.stream().map(line -> line.compiled() ? line.command : "").collect(Collectors.toList()));
+    }
+}
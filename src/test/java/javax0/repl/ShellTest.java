@@ -0,0 +1,91 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+@DisabledOnOs(OS.WINDOWS)
+class ShellTest {
+
+    @Test
+    @DisplayName("the lines are printed in the order they arrive and the standard error lines are prefixed")
+    void testOutput() throws IOException, InterruptedException {
+        final var output = new StringWriter();
+        final var sut = new Shell("echo one; sleep 0.2; echo two >&2; sleep 0.2; echo three; exit 3",
+            new PrintWriter(output)).pump();
+        Assertions.assertEquals(3, sut.waitFor(null));
+        Assertions.assertEquals("one\n[STDERR] two\nthree\n", output.toString());
+        Assertions.assertFalse(sut.timedOut());
+        Assertions.assertFalse(sut.cancelled());
+    }
+
+    @Test
+    @DisplayName("the output is printed while the process is still running")
+    void testStreaming() throws IOException, InterruptedException {
+        final var output = new StringWriter();
+        final var sut = new Shell("echo first; sleep 30", new PrintWriter(output)).pump();
+        final long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!output.toString().equals("first\n") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals("first\n", output.toString());
+        sut.cancel();
+        sut.waitFor(null);
+        Assertions.assertTrue(sut.cancelled());
+    }
+
+    @Test
+    @DisplayName("the process is killed when the timeout is over")
+    void testTimeout() throws IOException, InterruptedException {
+        final var sut = new Shell("sleep 30", new PrintWriter(new StringWriter())).pump();
+        final long start = System.nanoTime();
+        sut.waitFor(Duration.ofMillis(200));
+        Assertions.assertTrue(sut.timedOut());
+        Assertions.assertFalse(sut.cancelled());
+        Assertions.assertTrue(System.nanoTime() - start < 10_000_000_000L);
+    }
+
+    @Test
+    @DisplayName("the process can be cancelled from another thread")
+    void testCancel() throws IOException, InterruptedException {
+        final var sut = new Shell("sleep 30", new PrintWriter(new StringWriter())).pump();
+        final var canceller = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ignored) {
+            }
+            sut.cancel();
+        });
+        canceller.start();
+        final long start = System.nanoTime();
+        sut.waitFor(null);
+        canceller.join();
+        Assertions.assertTrue(sut.cancelled());
+        Assertions.assertFalse(sut.timedOut());
+        Assertions.assertTrue(System.nanoTime() - start < 10_000_000_000L);
+    }
+
+    @Test
+    @DisplayName("the header is printed before the output of the shell command and the end after it")
+    void testRepl() {
+        final var in = "!echo hello; echo world\n!sleep 30\n";
+        final var out = new ByteArrayOutputStream();
+        new Repl()
+            .shellTimeout(Duration.ofMillis(200))
+            .console(new StreamConsole(new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8)), out))
+            .run();
+        final var output = out.toString(StandardCharsets.UTF_8);
+        Assertions.assertTrue(output.contains("$ [SHELL OUTPUT]\nhello\nworld\n[END SHELL OUTPUT] exit code 0\n" +
+            "$ [SHELL OUTPUT]\n[END SHELL OUTPUT] killed after 200ms\n"), output);
+    }
+}
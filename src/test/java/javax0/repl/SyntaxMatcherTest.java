@@ -0,0 +1,57 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+
+class SyntaxMatcherTest {
+
+    private static boolean match(SyntaxMatcher sut, ReplCommandEnvironment env, String line) {
+        env.line = line;
+        env.matcher = null;
+        env.matcherId = null;
+        return sut.match(env);
+    }
+
+    @Test
+    @DisplayName("regular expressions are tried in the order of the declaration")
+    void testOrder() {
+        final var regexes = new LinkedHashMap<String, String>();
+        regexes.put("canonical", "(\\d+)\\s*\\+(\\d+)i");
+        regexes.put("polar", "(\\d+)\\((\\d+\\.?\\d*)\\)");
+        regexes.put("set", "set (\\w+)");
+        regexes.put("optional", "(x)?y");
+        regexes.put("any", ".*");
+        final var sut = SyntaxMatcher.of(regexes);
+        final var env = new ReplCommandEnvironment(null);
+        Assertions.assertTrue(match(sut, env, "3+4i"));
+        Assertions.assertEquals("canonical", env.matcherId);
+        Assertions.assertEquals("4", env.matcher.group(2));
+        Assertions.assertTrue(match(sut, env, "5(1.5)"));
+        Assertions.assertEquals("polar", env.matcherId);
+        Assertions.assertEquals("1.5", env.matcher.group(2));
+        Assertions.assertTrue(match(sut, env, "set abc"));
+        Assertions.assertEquals("set", env.matcherId);
+        Assertions.assertEquals("abc", env.matcher.group(1));
+        Assertions.assertTrue(match(sut, env, "y"));
+        Assertions.assertEquals("optional", env.matcherId);
+        Assertions.assertTrue(match(sut, env, "3+4"));
+        Assertions.assertEquals("any", env.matcherId);
+    }
+
+    @Test
+    @DisplayName("no match when none of the regular expressions match")
+    void testNoMatch() {
+        final var regexes = new LinkedHashMap<String, String>();
+        regexes.put("number", "\\d+");
+        regexes.put("literal", "ab+c");
+        final var sut = SyntaxMatcher.of(regexes);
+        final var env = new ReplCommandEnvironment(null);
+        Assertions.assertFalse(match(sut, env, "x"));
+        Assertions.assertNull(env.matcherId);
+        Assertions.assertTrue(match(sut, env, "abbc"));
+        Assertions.assertEquals("literal", env.matcherId);
+    }
+}
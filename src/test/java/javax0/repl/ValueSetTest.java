@@ -0,0 +1,52 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+class ValueSetTest {
+
+    @Test
+    @DisplayName("unambiguous prefixes resolve to the full name in any character case")
+    void testResolve() {
+        final var sut = ValueSet.of("output", "delayed", "Text");
+        Assertions.assertEquals("output", sut.resolve("o"));
+        Assertions.assertEquals("Text", sut.resolve("TE"));
+        Assertions.assertEquals("delayed", sut.resolve("abdelayed", 2, 9));
+        Assertions.assertTrue(sut.contains("Text"));
+        Assertions.assertFalse(sut.contains("text"));
+        Assertions.assertEquals(3, sut.size());
+    }
+
+    @Test
+    @DisplayName("ambiguous and unknown prefixes are errors")
+    void testErrors() {
+        final var sut = ValueSet.of("key1a", "key2", "key0");
+        var e = Assertions.assertThrows(IllegalArgumentException.class, () -> sut.resolve("key"));
+        Assertions.assertTrue(e.getMessage().contains("Parameter key is ambiguous."), e.getMessage());
+        e = Assertions.assertThrows(IllegalArgumentException.class, () -> sut.resolve("key3"));
+        Assertions.assertTrue(e.getMessage().contains("key3 is not an allowed parameter"), e.getMessage());
+    }
+
+    @Test
+    @DisplayName("a name that is a prefix of another name is reported when the set is created")
+    void testHiddenName() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ValueSet.of("key", "keyword"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ValueSet.of("key", "KEY"));
+    }
+
+    @Test
+    @DisplayName("registered value sets are resolved when the line is parsed")
+    void testParse() {
+        final var sut = ParameterParser.parse("o=y t=n", ValueSet.of("output", "text"),
+            Map.of("output", ValueSet.of("yes", "no")));
+        Assertions.assertEquals("yes", sut.get("output").get());
+        Assertions.assertEquals("n", sut.get("text").get());
+        Assertions.assertEquals("no", sut.get("text", Set.of("yes", "no")).get());
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+            ParameterParser.parse("o=maybe", ValueSet.of("output"), Map.of("output", ValueSet.of("yes", "no"))));
+    }
+}
@@ -0,0 +1,73 @@
+package javax0.repl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static javax0.repl.CommandDefinitionBuilder.start;
+
+class WorkerTest {
+
+    @Test
+    @DisplayName("a cancelled command that does not stop cannot print output or messages after the grace period")
+    void testAbandoned() throws InterruptedException {
+        final var finished = new CountDownLatch(1);
+        final var in = "spam\necho after\n";
+        final var out = new ByteArrayOutputStream();
+        new Repl()
+            .command(start().kw("spam").timeout(Duration.ofMillis(50)).usage("spam").help("")
+                .executor(env -> {
+                    // ignores the cancellation and the interrupts for longer than the grace period
+                    final long end = System.nanoTime() + 2_000_000_000L;
+                    while (System.nanoTime() < end) {
+                        env.console().writer().print("spam\n");
+                        env.console().writer().flush();
+                        env.message().error("spam " + System.nanoTime());
+                        try {
+                            Thread.sleep(10);
+                        } catch (InterruptedException ignored) {
+                        }
+                    }
+                    finished.countDown();
+                }))
+            .command(start().kw("echo").usage("echo").help("")
+                .executor(env -> env.message().info("echo " + env.line())))
+            .console(new StreamConsole(new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8)), out))
+            .run();
+        Assertions.assertTrue(finished.await(10, TimeUnit.SECONDS));
+        final var output = out.toString(StandardCharsets.UTF_8);
+        final var warning = "[WARNING] The command did not stop, its output and messages are dropped from now on\n";
+        Assertions.assertTrue(output.contains("spam\n[ERROR] Command 'spam' was cancelled after 50ms\n" + warning),
+            output);
+        Assertions.assertFalse(output.contains("[ERROR] spam"), output);
+        Assertions.assertTrue(output.endsWith(warning + "$ [INFO] echo after\n$ "), output);
+    }
+
+    @Test
+    @DisplayName("the messages of a command that stops after it was cancelled are kept")
+    void testCancelled() {
+        final var in = "wait\n";
+        final var out = new ByteArrayOutputStream();
+        new Repl()
+            .command(start().kw("wait").timeout(Duration.ofMillis(50)).usage("wait").help("")
+                .executor(env -> {
+                    env.message().info("started");
+                    while (!env.cancelled()) {
+                        Thread.onSpinWait();
+                    }
+                    env.message().warning("stopped");
+                }))
+            .console(new StreamConsole(new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8)), out))
+            .run();
+        final var output = out.toString(StandardCharsets.UTF_8);
+        Assertions.assertTrue(output.contains("$ [ERROR] Command 'wait' was cancelled after 50ms\n" +
+            "[WARNING] stopped\n[INFO] started\n$ "), output);
+    }
+}